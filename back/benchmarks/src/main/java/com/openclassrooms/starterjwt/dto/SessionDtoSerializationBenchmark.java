@@ -0,0 +1,64 @@
+package com.openclassrooms.starterjwt.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of {@code GET /api/session} bodies, with the object mapper configured
+ * the way Spring Boot configures it for the controllers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionDtoSerializationBenchmark {
+    @Param({"20", "500"})
+    public int sessions;
+
+    @Param({"20", "1000"})
+    public int rosterSize;
+
+    private ObjectMapper objectMapper;
+
+    private List<SessionDto> sessionDtos;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        List<Long> users = new ArrayList<>(rosterSize);
+        for (long id = 1; id <= rosterSize; id++) {
+            users.add(id);
+        }
+
+        sessionDtos = new ArrayList<>(sessions);
+        for (long id = 1; id <= sessions; id++) {
+            sessionDtos.add(new SessionDto(
+                    id,
+                    "Session " + id,
+                    new Date(),
+                    1L,
+                    "Vinyasa for every level",
+                    50,
+                    users,
+                    null,
+                    LocalDateTime.now(),
+                    LocalDateTime.now()));
+        }
+    }
+
+    @Benchmark
+    public byte[] writeSessionList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(sessionDtos);
+    }
+}
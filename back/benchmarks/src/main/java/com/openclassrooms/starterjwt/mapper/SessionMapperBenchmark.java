@@ -0,0 +1,96 @@
+package com.openclassrooms.starterjwt.mapper;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import com.openclassrooms.starterjwt.services.UserService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * {@link SessionMapper} over rosters of growing size. Services are replaced by in-memory
+ * stubs so that only the mapping cost is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionMapperBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int rosterSize;
+
+    private SessionMapper sessionMapper;
+
+    private Session session;
+
+    private List<Long> participantIds;
+
+    private SessionDto sessionDto;
+
+    @Setup
+    public void setUp() {
+        Teacher teacher = Teacher.builder().id(1L).firstName("Margot").lastName("DELAHAYE").build();
+
+        List<User> users = new ArrayList<>(rosterSize);
+        for (long id = 1; id <= rosterSize; id++) {
+            users.add(User.builder()
+                    .id(id)
+                    .email("user" + id + "@yoga.test")
+                    .firstName("First")
+                    .lastName("Last")
+                    .password("hash")
+                    .build());
+        }
+        participantIds = users.stream().map(User::getId).collect(Collectors.toList());
+
+        sessionMapper = new SessionMapperImpl();
+        sessionMapper.teacherService = new TeacherService(null) {
+            @Override
+            public Teacher findById(Long id) {
+                return teacher;
+            }
+        };
+        sessionMapper.userService = new UserService(null, null, null, null) {
+            @Override
+            public List<User> findAllById(Collection<Long> ids) {
+                return users;
+            }
+        };
+
+        session = Session.builder()
+                .id(1L)
+                .name("Morning flow")
+                .description("Vinyasa for every level")
+                .date(new Date())
+                .teacher(teacher)
+                .users(users)
+                .build();
+
+        sessionDto = sessionMapper.toDto(session);
+    }
+
+    @Benchmark
+    public SessionDto toDto() {
+        return sessionMapper.toDto(session);
+    }
+
+    @Benchmark
+    public SessionDto toDtoWithParticipantIds() {
+        return sessionMapper.toDto(session, participantIds);
+    }
+
+    @Benchmark
+    public Session toEntity() {
+        return sessionMapper.toEntity(sessionDto);
+    }
+}
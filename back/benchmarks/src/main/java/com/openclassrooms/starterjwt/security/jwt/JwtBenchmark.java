@@ -0,0 +1,130 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.BeanUtils;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request token work done by {@link AuthTokenFilter} and at login. The filter runs with warm
+ * token and principal caches, over a user repository stub.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+    private JwtUtils jwtUtils;
+
+    private JwtTokenCache jwtTokenCache;
+
+    private AuthTokenFilter authTokenFilter;
+
+    private Authentication authentication;
+
+    private String token;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    private final FilterChain chain = (request, response) -> { };
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "openclassrooms");
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 86_400_000);
+
+        jwtTokenCache = new JwtTokenCache(jwtUtils, 10_000);
+
+        User user = User.builder()
+                .id(1L)
+                .email("yoga@studio.com")
+                .firstName("Admin")
+                .lastName("Admin")
+                .password("hash")
+                .admin(true)
+                .build();
+        UserRepository userRepository = (UserRepository) Proxy.newProxyInstance(
+                UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class},
+                (proxy, method, args) -> Optional.of(user));
+        UserDetailsServiceImpl userDetailsService = BeanUtils.instantiateClass(
+                UserDetailsServiceImpl.class.getDeclaredConstructor(UserRepository.class), userRepository);
+
+        authTokenFilter = new AuthTokenFilter();
+        ReflectionTestUtils.setField(authTokenFilter, "jwtTokenCache", jwtTokenCache);
+        ReflectionTestUtils.setField(authTokenFilter, "userDetailsCache",
+                new UserDetailsCache(userDetailsService, 10_000, 300));
+
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(1L)
+                .username("yoga@studio.com")
+                .firstName("Admin")
+                .lastName("Admin")
+                .admin(true)
+                .build();
+        authentication = new UsernamePasswordAuthenticationToken(principal, null, Collections.emptyList());
+
+        token = jwtUtils.generateJwtToken(authentication);
+        jwtTokenCache.getValidClaims(token);
+
+        request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public String generateJwtToken() {
+        return jwtUtils.generateJwtToken(authentication);
+    }
+
+    @Benchmark
+    public boolean validateJwtToken() {
+        return jwtUtils.validateJwtToken(token);
+    }
+
+    @Benchmark
+    public String getUserNameFromJwtToken() {
+        return jwtUtils.getUserNameFromJwtToken(token);
+    }
+
+    @Benchmark
+    public Claims parseValidClaims() {
+        return jwtUtils.parseValidClaims(token);
+    }
+
+    @Benchmark
+    public Claims cachedValidClaims() {
+        return jwtTokenCache.getValidClaims(token);
+    }
+
+    @Benchmark
+    public Authentication authenticateRequest() throws ServletException, IOException {
+        authTokenFilter.doFilter(request, response, chain);
+        Authentication result = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return result;
+    }
+}
@@ -0,0 +1,35 @@
+package com.openclassrooms.starterjwt.cache;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * Hibernate's second-level cache runs on its own JCache manager, with regions configured in
+ * {@code application.conf}. Reference data such as teachers is cached there only: Hibernate
+ * keeps the regions current on write and copies entries into each persistence context, so no
+ * caller ever shares a mutable entity.
+ */
+@Configuration
+public class CacheConfig {
+    /**
+     * One JCache manager per application context, so the regions of two contexts in the same JVM,
+     * as in tests, never share entries.
+     */
+    @Bean
+    public javax.cache.CacheManager hibernateCacheManager() {
+        return Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("hibernate-" + UUID.randomUUID()), getClass().getClassLoader());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(javax.cache.CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
@@ -0,0 +1,51 @@
+package com.openclassrooms.starterjwt.cache;
+
+import com.openclassrooms.starterjwt.models.Teacher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA listener that drops a teacher from the {@code teacher} region whenever the row is updated
+ * or deleted through the entity manager, so the next read goes to the database rather than
+ * relying on Hibernate's in-place update. Rows edited straight in the database are picked up
+ * when the region's short TTL expires.
+ */
+@Component
+public class TeacherCacheInvalidator {
+    // Looked up lazily, the entity manager factory is still being built when listeners are
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    public TeacherCacheInvalidator(ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Inside a transaction the eviction waits for the commit, so a concurrent read cannot put
+     * the old row back before the change is visible.
+     */
+    @PostUpdate
+    @PostRemove
+    public void evict(Teacher teacher) {
+        Long id = teacher.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(id);
+                }
+            });
+        } else {
+            evictNow(id);
+        }
+    }
+
+    private void evictNow(Long id) {
+        entityManagerFactory.getObject().getCache().evict(Teacher.class, id);
+    }
+}
@@ -1,12 +1,19 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 import javax.validation.Valid;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -21,68 +28,121 @@ import com.openclassrooms.starterjwt.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.PasswordHashingExecutor;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
-    private final AuthenticationManager authenticationManager;
+    private final UserDetailsServiceImpl userDetailsService;
     private final JwtUtils jwtUtils;
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final Executor taskExecutor;
+
+    /** Compared against when the email is unknown, so the response time does not give it away. */
+    private volatile String unknownUserHash;
 
-    AuthController(AuthenticationManager authenticationManager,
+    AuthController(UserDetailsServiceImpl userDetailsService,
             PasswordEncoder passwordEncoder,
             JwtUtils jwtUtils,
-            UserRepository userRepository) {
-        this.authenticationManager = authenticationManager;
+            UserRepository userRepository,
+            PasswordHashingExecutor passwordHashingExecutor,
+            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor taskExecutor) {
+        this.userDetailsService = userDetailsService;
         this.jwtUtils = jwtUtils;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.taskExecutor = taskExecutor;
     }
 
+    /**
+     * The user is loaded on the request thread and only the BCrypt comparison goes to the hashing
+     * pool, so a slow database never holds a hashing slot.
+     */
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+        UserDetails user = findUser(loginRequest.getEmail());
 
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
+        return passwordHashingExecutor
+                .submit(PasswordHashingExecutor.LOGIN, () -> authenticate(user, loginRequest.getPassword()))
+                .thenApply(this::toJwtResponse);
+    }
 
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = jwtUtils.generateJwtToken(authentication);
-        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+    private UserDetails findUser(String email) {
+        try {
+            return userDetailsService.loadUserByUsername(email);
+        } catch (UsernameNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @throws BadCredentialsException for an unknown email or a wrong password alike
+     */
+    private Authentication authenticate(UserDetails user, String password) {
+        String hash = user != null ? user.getPassword() : unknownUserHash();
+        if (!passwordEncoder.matches(password, hash) || user == null) {
+            throw new BadCredentialsException("Bad credentials");
+        }
+        return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+    }
 
-        boolean isAdmin = false;
-        User user = this.userRepository.findByEmail(userDetails.getUsername()).orElse(null);
-        if (user != null) {
-            isAdmin = user.isAdmin();
+    private String unknownUserHash() {
+        if (unknownUserHash == null) {
+            unknownUserHash = passwordEncoder.encode("unknown-user");
         }
+        return unknownUserHash;
+    }
+
+    private ResponseEntity<?> toJwtResponse(Authentication authentication) {
+        String jwt = jwtUtils.generateJwtToken(authentication);
+        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
         return ResponseEntity.ok(new JwtResponse(jwt,
                 userDetails.getId(),
                 userDetails.getUsername(),
                 userDetails.getFirstName(),
                 userDetails.getLastName(),
-                isAdmin));
+                Boolean.TRUE.equals(userDetails.getAdmin())));
     }
 
+    /**
+     * A single INSERT: a taken email is caught by the unique constraint on USERS.email, which
+     * also settles concurrent signups, rather than by a query beforehand. Such a request still
+     * costs one hash, which the bounded hashing pool absorbs like any other signup. The insert
+     * runs on the application task pool rather than the hashing pool, so database latency never
+     * eats hashing capacity.
+     */
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
-        if (userRepository.existsByEmail(signUpRequest.getEmail())) {
-            return ResponseEntity
-                    .badRequest()
-                    .body(new MessageResponse("Error: Email is already taken!"));
-        }
+    public CompletableFuture<ResponseEntity<?>> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
+        return passwordHashingExecutor
+                .submit(PasswordHashingExecutor.REGISTER, () -> passwordEncoder.encode(signUpRequest.getPassword()))
+                .thenApplyAsync(hash -> {
+                    // Create new user's account
+                    User user = new User(signUpRequest.getEmail(),
+                            signUpRequest.getLastName(),
+                            signUpRequest.getFirstName(),
+                            hash,
+                            false);
 
-        // Create new user's account
-        User user = new User(signUpRequest.getEmail(),
-                signUpRequest.getLastName(),
-                signUpRequest.getFirstName(),
-                passwordEncoder.encode(signUpRequest.getPassword()),
-                false);
+                    try {
+                        userRepository.save(user);
+                    } catch (DataIntegrityViolationException e) {
+                        return emailTaken();
+                    }
 
-        userRepository.save(user);
+                    return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
+                }, taskExecutor);
+    }
 
-        return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
+    private static ResponseEntity<?> emailTaken() {
+        return ResponseEntity
+                .badRequest()
+                .body(new MessageResponse("Error: Email is already taken!"));
     }
 }
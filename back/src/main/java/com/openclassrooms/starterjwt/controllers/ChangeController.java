@@ -0,0 +1,31 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.services.ChangeFeedService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Incremental sync for downstream systems, restricted to admins: pass the {@code nextCursor} of
+ * each page as {@code since} to get the changes committed after it, oldest first.
+ */
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/changes")
+public class ChangeController {
+    private final ChangeFeedService changeFeedService;
+
+    public ChangeController(ChangeFeedService changeFeedService) {
+        this.changeFeedService = changeFeedService;
+    }
+
+    @GetMapping()
+    public ResponseEntity<?> findSince(@RequestParam(value = "since", required = false) String since,
+                                       @RequestParam(value = "size", required = false) Integer size) {
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(this.changeFeedService.findSince(since, size));
+    }
+}
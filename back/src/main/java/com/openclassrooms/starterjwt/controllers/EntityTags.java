@@ -0,0 +1,70 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.function.ToLongFunction;
+
+/**
+ * Builds the validators used for conditional GETs. Tags are derived from ids and row
+ * versions only, so a request can be answered with 304 before anything is mapped or
+ * serialized.
+ */
+final class EntityTags {
+    /**
+     * Lets browsers keep the body but forces them to revalidate it on every use.
+     */
+    static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private EntityTags() {
+    }
+
+    static boolean isConditional(WebRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    static String of(Long id, long version) {
+        return id + "-" + version;
+    }
+
+    /**
+     * Digests the id and version of every row, plus whether more rows follow, so a row that is
+     * changed, added, removed or pushed out of the page changes the tag.
+     */
+    static <T> String ofRows(Collection<T> rows, ToLongFunction<T> id, ToLongFunction<T> version, boolean hasNext) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES);
+        for (T row : rows) {
+            buffer.clear();
+            buffer.putLong(id.applyAsLong(row)).putLong(version.applyAsLong(row));
+            digest.update(buffer.array());
+        }
+        digest.update(hasNext ? (byte) 1 : (byte) 0);
+
+        return "r-" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest()).substring(0, 22);
+    }
+
+    /**
+     * @return epoch milliseconds, or {@code -1} when the row has never been stamped
+     */
+    static long lastModified(LocalDateTime updatedAt) {
+        return updatedAt == null ? -1 : updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.export.ExportFormat;
+import com.openclassrooms.starterjwt.export.RowWriter;
+import com.openclassrooms.starterjwt.services.ExportService;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bulk downloads for reporting, restricted to admins. Rows are written to the response while
+ * they are read, on the request thread, so an export is not cut short by the async request
+ * timeout. CSV starts with a header line unless the request resumes an earlier download, so the
+ * parts can be appended.
+ * <p>
+ * A failure before anything reached the client turns into a plain error response. After that the
+ * status is gone, so the download is left unterminated instead: no gzip trailer, and the container
+ * closes the connection without the final chunk. Clients can always tell a partial file.
+ */
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/export")
+public class ExportController {
+    private final ExportService exportService;
+    private final ObjectMapper objectMapper;
+
+
+    public ExportController(ExportService exportService,
+                            ObjectMapper objectMapper) {
+        this.exportService = exportService;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping("/sessions")
+    public void exportSessions(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                               @RequestParam(value = "afterId", required = false) Long afterId,
+                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                               HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.of(format);
+
+        RowWriter writer = open(response, exportFormat, "sessions", ExportService.SESSION_COLUMNS,
+                afterId == null, acceptEncoding);
+        stream(response, writer, () -> this.exportService.exportSessions(afterId != null ? afterId : 0L, writer));
+    }
+
+    @GetMapping("/attendance")
+    public void exportAttendance(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                 @RequestParam(value = "afterSessionId", required = false) Long afterSessionId,
+                                 @RequestParam(value = "afterUserId", required = false) Long afterUserId,
+                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                 HttpServletResponse response) throws IOException {
+        ExportFormat exportFormat = ExportFormat.of(format);
+
+        RowWriter writer = open(response, exportFormat, "attendance", ExportService.ATTENDANCE_COLUMNS,
+                afterSessionId == null && afterUserId == null, acceptEncoding);
+        stream(response, writer, () -> this.exportService.exportAttendance(
+                afterSessionId != null ? afterSessionId : 0L,
+                afterUserId != null ? afterUserId : 0L,
+                writer));
+    }
+
+    /**
+     * Closes the writer, which completes the download, only when every row was written.
+     */
+    private static void stream(HttpServletResponse response, RowWriter writer, Export export) throws IOException {
+        try {
+            export.run();
+        } catch (IOException | RuntimeException e) {
+            if (!response.isCommitted()) {
+                response.reset();
+            }
+            throw e;
+        }
+        writer.close();
+    }
+
+    private RowWriter open(HttpServletResponse response, ExportFormat format, String name, List<String> columns,
+                           boolean header, String acceptEncoding) throws IOException {
+        response.setContentType(format.getMediaType().toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(name + "." + format.getExtension()).build().toString());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        OutputStream out = response.getOutputStream();
+        if (acceptsGzip(acceptEncoding)) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            out = new GZIPOutputStream(out, 8192);
+        }
+        return format.open(out, columns, header, this.objectMapper.getFactory());
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().replace(" ", "");
+                if (parameter.matches("q=0(\\.0{0,3})?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface Export {
+        void run() throws IOException;
+    }
+}
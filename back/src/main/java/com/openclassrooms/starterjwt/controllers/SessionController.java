@@ -1,64 +1,141 @@
 package com.openclassrooms.starterjwt.controllers;
 
 
+import com.openclassrooms.starterjwt.dto.ParticipationBatchDto;
+import com.openclassrooms.starterjwt.dto.ParticipationBatchResultDto;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionImportReportDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.payload.response.MessageResponse;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.services.ParticipationStatus;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionImportService;
 import com.openclassrooms.starterjwt.services.SessionService;
-import lombok.extern.log4j.Log4j2;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/session")
-@Log4j2
 public class SessionController {
+    private static final String PARTICIPANT_IDS = "ids";
+    private static final String PARTICIPANT_COUNT = "count";
+
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
+    private final SessionImportService sessionImportService;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             SessionImportService sessionImportService) {
         this.sessionMapper = sessionMapper;
         this.sessionService = sessionService;
+        this.sessionImportService = sessionImportService;
     }
 
+    /**
+     * A conditional request is first checked against a revision probe, so a 304 never loads the
+     * session. The probe runs before the load: a change in between only costs a spare 200.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    public ResponseEntity<?> findById(@PathVariable("id") String id, WebRequest request) {
         try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+            Long sessionId = Long.valueOf(id);
+
+            if (EntityTags.isConditional(request)) {
+                SessionRepository.Version version = this.sessionService.getVersion(sessionId);
+
+                if (version == null) {
+                    return ResponseEntity.notFound().build();
+                }
+                if (request.checkNotModified(EntityTags.of(version.getId(), version.getRevision()),
+                        EntityTags.lastModified(version.getUpdatedAt()))) {
+                    return null;
+                }
+            }
+
+            Session session = this.sessionService.getById(sessionId);
 
             if (session == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            request.checkNotModified(EntityTags.of(session.getId(), session.getRevision()),
+                    EntityTags.lastModified(session.getUpdatedAt()));
+            return ResponseEntity.ok().cacheControl(EntityTags.REVALIDATE).body(this.sessionMapper.toDto(session, this.sessionService.findParticipantIds(session.getId())));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(@RequestParam(value = "unpaged", defaultValue = "false") boolean unpaged,
+                                     @RequestParam(value = "cursor", required = false) String cursor,
+                                     @RequestParam(value = "size", required = false) Integer size,
+                                     @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                     @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                     @RequestParam(value = "teacherId", required = false) Long teacherId,
+                                     @RequestParam(value = "participants", defaultValue = PARTICIPANT_IDS) String participants,
+                                     WebRequest request) {
+        if (!PARTICIPANT_IDS.equals(participants) && !PARTICIPANT_COUNT.equals(participants)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (unpaged) {
+            List<Session> sessions = this.sessionService.findAll();
+            if (notModified(request, sessions, false)) {
+                return null;
+            }
+
+            return ResponseEntity.ok().cacheControl(EntityTags.REVALIDATE).body(this.toDto(sessions, participants));
+        }
+
+        Slice<Session> page = this.sessionService.findPage(SessionCursor.decode(cursor), from, to, teacherId, size);
+        List<Session> sessions = page.getContent();
+        if (notModified(request, sessions, page.hasNext())) {
+            return null;
+        }
+        String nextCursor = page.hasNext() ? SessionCursor.of(sessions.get(sessions.size() - 1)).encode() : null;
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+        return ResponseEntity.ok().cacheControl(EntityTags.REVALIDATE).body(new SessionPageDto(this.toDto(sessions, participants), nextCursor));
     }
 
     @PostMapping()
     public ResponseEntity<?> create(@Valid @RequestBody SessionDto sessionDto) {
-        log.info(sessionDto);
-
         Session session = this.sessionService.create(this.sessionMapper.toEntity(sessionDto));
 
-        log.info(session);
         return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
     }
 
+    /**
+     * Creates many sessions at once. Answers 400 with the per-row errors when any row is invalid,
+     * in which case nothing is written; otherwise 200 with the id or failure of each row.
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importSessions(@RequestBody List<SessionDto> sessionDtos) {
+        return this.toResponse(this.sessionImportService.importSessions(sessionDtos));
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<?> importSessionsCsv(Reader body) throws IOException {
+        return this.toResponse(this.sessionImportService.importSessions(this.sessionImportService.readCsv(body)));
+    }
+
     @PutMapping("{id}")
     public ResponseEntity<?> update(@PathVariable("id") String id, @Valid @RequestBody SessionDto sessionDto) {
         try {
@@ -89,7 +166,11 @@ public class SessionController {
     @PostMapping("{id}/participate/{userId}")
     public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
-            this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+            ParticipationStatus status = this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+
+            if (status == ParticipationStatus.WAITLISTED) {
+                return ResponseEntity.accepted().body(new MessageResponse("Session is full, added to the waitlist"));
+            }
 
             return ResponseEntity.ok().build();
         } catch (NumberFormatException e) {
@@ -107,4 +188,38 @@ public class SessionController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    /**
+     * Admin only. Adds and removes many participants at once, removals first. Answers 200 with
+     * the outcome of every pair, in request order, whatever those outcomes are.
+     */
+    @PostMapping("participations")
+    public ResponseEntity<?> changeParticipants(@Valid @RequestBody ParticipationBatchDto batch) {
+        return ResponseEntity.ok().body(new ParticipationBatchResultDto(
+                this.sessionService.changeParticipants(batch.getRemove(), batch.getAdd())));
+    }
+
+    private ResponseEntity<SessionImportReportDto> toResponse(SessionImportReportDto report) {
+        boolean invalid = report.getRows().stream()
+                .anyMatch(row -> row.getStatus() == SessionImportReportDto.Status.INVALID);
+
+        return invalid ? ResponseEntity.badRequest().body(report) : ResponseEntity.ok().body(report);
+    }
+
+    /**
+     * Lists carry no Last-Modified: a deleted row would not move it, so only the tag is trusted.
+     */
+    private static boolean notModified(WebRequest request, List<Session> sessions, boolean hasNext) {
+        return request.checkNotModified(EntityTags.ofRows(sessions, Session::getId, Session::getRevision, hasNext));
+    }
+
+    private List<SessionDto> toDto(List<Session> sessions, String participants) {
+        List<Long> sessionIds = sessions.stream().map(Session::getId).collect(Collectors.toList());
+
+        if (PARTICIPANT_COUNT.equals(participants)) {
+            return this.sessionMapper.toDtoWithCounts(sessions, this.sessionService.countParticipants(sessionIds));
+        }
+
+        return this.sessionMapper.toDto(sessions, this.sessionService.findParticipantIds(sessionIds));
+    }
 }
@@ -0,0 +1,40 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.events.SessionEventBroadcaster;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Live session changes as Server-Sent Events, so that open session views can update in place
+ * instead of polling. A browser {@code EventSource} cannot send the {@code Authorization} header,
+ * so it connects with the JWT as a parameter instead:
+ * {@code new EventSource('/api/session/events?access_token=' + token)}. Only this endpoint reads
+ * the parameter, which keeps tokens out of the URLs of every other request.
+ */
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/session/events")
+public class SessionEventController {
+    private final SessionEventBroadcaster broadcaster;
+
+    public SessionEventController(SessionEventBroadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                HttpServletResponse response) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        // Keeps nginx from buffering the stream
+        response.setHeader("X-Accel-Buffering", "no");
+        return this.broadcaster.subscribe(lastEventId);
+    }
+}
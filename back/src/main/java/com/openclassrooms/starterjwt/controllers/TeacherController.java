@@ -5,6 +5,9 @@ import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDateTime;
 import java.util.List;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -22,7 +25,7 @@ public class TeacherController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    public ResponseEntity<?> findById(@PathVariable("id") String id, WebRequest request) {
         try {
             Teacher teacher = this.teacherService.findById(Long.valueOf(id));
 
@@ -30,16 +33,30 @@ public class TeacherController {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.teacherMapper.toDto(teacher));
+            // Teachers come from the second-level cache, so no probe query is needed to answer a 304
+            if (notModified(request, teacher.getId(), teacher.getUpdatedAt())) {
+                return null;
+            }
+            return ResponseEntity.ok().cacheControl(EntityTags.REVALIDATE).body(this.teacherMapper.toDto(teacher));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
+    public ResponseEntity<?> findAll(WebRequest request) {
         List<Teacher> teachers = this.teacherService.findAll();
+        if (request.checkNotModified(EntityTags.ofRows(teachers, Teacher::getId,
+                teacher -> EntityTags.lastModified(teacher.getUpdatedAt()), false))) {
+            return null;
+        }
+
+        return ResponseEntity.ok().cacheControl(EntityTags.REVALIDATE).body(this.teacherMapper.toDto(teachers));
+    }
 
-        return ResponseEntity.ok().body(this.teacherMapper.toDto(teachers));
+    // Teachers are never written by the API, so their update timestamp is their version
+    private static boolean notModified(WebRequest request, Long id, LocalDateTime updatedAt) {
+        long lastModified = EntityTags.lastModified(updatedAt);
+        return request.checkNotModified(EntityTags.of(id, lastModified), lastModified);
     }
 }
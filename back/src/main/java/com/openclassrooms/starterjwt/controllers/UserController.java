@@ -1,14 +1,22 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
+import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.services.UserService;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Objects;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -17,12 +25,18 @@ import java.util.Objects;
 public class UserController {
     private final UserMapper userMapper;
     private final UserService userService;
+    private final SessionMapper sessionMapper;
+    private final SessionService sessionService;
 
 
     public UserController(UserService userService,
-                             UserMapper userMapper) {
+                             UserMapper userMapper,
+                             SessionService sessionService,
+                             SessionMapper sessionMapper) {
         this.userMapper = userMapper;
         this.userService = userService;
+        this.sessionMapper = sessionMapper;
+        this.sessionService = sessionService;
     }
 
     @GetMapping("/{id}")
@@ -40,6 +54,44 @@ public class UserController {
         }
     }
 
+    /**
+     * Sessions the user has joined, upcoming first; {@code past=true} walks back through the
+     * ones already held. Items carry a participant count instead of the roster. Only the user
+     * and admins may list them.
+     */
+    @GetMapping("/{id}/sessions")
+    public ResponseEntity<?> findSessions(@PathVariable("id") String id,
+                                          @RequestParam(value = "past", defaultValue = "false") boolean past,
+                                          @RequestParam(value = "cursor", required = false) String cursor,
+                                          @RequestParam(value = "size", required = false) Integer size) {
+        try {
+            Long userId = Long.valueOf(id);
+
+            Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+            if (!(principal instanceof UserDetailsImpl)
+                    || !(userId.equals(((UserDetailsImpl) principal).getId())
+                    || Boolean.TRUE.equals(((UserDetailsImpl) principal).getAdmin()))) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+
+            User user = this.userService.findById(userId);
+
+            if (user == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            Slice<Session> page = this.sessionService.findJoined(user.getId(), past, SessionCursor.decode(cursor), size);
+            List<Session> sessions = page.getContent();
+            String nextCursor = page.hasNext()
+                    ? SessionCursor.of(sessions.get(sessions.size() - 1), past).encode()
+                    : null;
+
+            return ResponseEntity.ok().body(new SessionPageDto(this.sessionMapper.toSummaryDto(sessions), nextCursor));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("{id}")
     public ResponseEntity<?> save(@PathVariable("id") String id) {
         try {
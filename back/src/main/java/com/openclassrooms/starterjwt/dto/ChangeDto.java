@@ -0,0 +1,30 @@
+package com.openclassrooms.starterjwt.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeDto {
+    /** Position in the feed; later commits always have higher ids. */
+    private Long id;
+
+    /** {@code session} or {@code user}. */
+    private String entity;
+
+    private Long entityId;
+
+    /** {@code session.created}, {@code session.joined}, {@code user.deleted}... */
+    private String action;
+
+    /** The participant of a {@code session.joined}, {@code session.waitlisted} or {@code session.left}. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long userId;
+
+    private Instant changedAt;
+}
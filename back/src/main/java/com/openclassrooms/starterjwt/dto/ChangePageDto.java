@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangePageDto {
+    private List<ChangeDto> items;
+
+    /** Where to resume; set even on an empty page, so a consumer can keep polling with it. */
+    private String nextCursor;
+
+    private boolean hasMore;
+}
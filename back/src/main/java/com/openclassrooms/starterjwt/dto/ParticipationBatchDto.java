@@ -0,0 +1,32 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParticipationBatchDto {
+    @NotNull
+    private List<@Valid @NotNull Pair> add = new ArrayList<>();
+
+    @NotNull
+    private List<@Valid @NotNull Pair> remove = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Pair {
+        @NotNull
+        private Long sessionId;
+
+        @NotNull
+        private Long userId;
+    }
+}
@@ -0,0 +1,38 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParticipationBatchResultDto {
+    /** Removals first, then additions, each in request order. */
+    private List<Result> results;
+
+    public enum Outcome {
+        ENROLLED,
+        ALREADY_PARTICIPATING,
+        /** Every seat was taken; the user was neither enrolled nor waitlisted. */
+        SESSION_FULL,
+        REMOVED,
+        REMOVED_FROM_WAITLIST,
+        NOT_PARTICIPATING,
+        UNKNOWN_SESSION,
+        UNKNOWN_USER
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Result {
+        private Long sessionId;
+
+        private Long userId;
+
+        private Outcome outcome;
+    }
+}
@@ -1,9 +1,11 @@
 package com.openclassrooms.starterjwt.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -31,8 +33,15 @@ public class SessionDto {
     @Size(max = 2500)
     private String description;
 
+    @Min(1)
+    private Integer capacity;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<Long> users;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long participantCount;
+
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
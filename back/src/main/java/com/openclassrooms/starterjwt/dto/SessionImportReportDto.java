@@ -0,0 +1,48 @@
+package com.openclassrooms.starterjwt.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionImportReportDto {
+    private int total;
+
+    private int imported;
+
+    private int failed;
+
+    private List<Row> rows;
+
+    public enum Status {
+        /** Inserted; {@code id} is set. */
+        IMPORTED,
+        /** Rejected by validation, along with the rest of the import. */
+        INVALID,
+        /** Valid, but not imported because another row was invalid. */
+        SKIPPED,
+        /** Valid, but its chunk was rolled back. */
+        FAILED
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Row {
+        /** Position in the request, from 0. */
+        private int index;
+
+        private Status status;
+
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Long id;
+
+        @JsonInclude(JsonInclude.Include.NON_EMPTY)
+        private List<String> errors;
+    }
+}
@@ -0,0 +1,29 @@
+package com.openclassrooms.starterjwt.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by {@code SessionService} inside the transaction of every session mutation.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class SessionChangedEvent {
+    private final Type type;
+
+    private final Long sessionId;
+
+    /** The participant that joined or left, {@code null} for changes to the session itself. */
+    private final Long userId;
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        JOINED,
+        WAITLISTED,
+        LEFT
+    }
+}
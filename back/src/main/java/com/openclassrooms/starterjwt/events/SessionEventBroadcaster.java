@@ -0,0 +1,376 @@
+package com.openclassrooms.starterjwt.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes committed session changes to Server-Sent Events subscribers. Connections are async
+ * servlet requests, so an idle subscriber holds no thread; a single dispatcher thread reads the
+ * seat counters once per burst of changes, serializes each event once and queues it for every
+ * subscriber. The dispatcher never writes to a connection itself: each subscriber has a bounded
+ * queue drained by a small pool of sender threads, so a slow client only delays its own events.
+ * A subscriber whose queue overflows is disconnected, and reloads or resumes when it reconnects.
+ * Events are named {@code session.created}, {@code session.updated},
+ * {@code session.deleted} and {@code session.seats}, and carry the session id with its current
+ * capacity and seat count, never participant ids.
+ * <p>
+ * The last {@code oc.app.events.replaySize} events are kept in memory, so a client reconnecting
+ * with {@code Last-Event-ID} gets what it missed. When those events are gone, were sent by
+ * another instance or before a restart, or changes happened while nobody was subscribed, it
+ * receives a {@code reset} event and should reload.
+ */
+@Component
+public class SessionEventBroadcaster implements DisposableBean {
+    public static final String RESET = "reset";
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionEventBroadcaster.class);
+
+    private final SessionRepository sessionRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ScheduledExecutorService dispatcher;
+
+    private final ExecutorService senders;
+
+    private final Counter overflows;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final Queue<SessionChangedEvent> pending = new ConcurrentLinkedQueue<>();
+
+    /** Ids from another process are recognised by this prefix. */
+    private final String generation = Long.toString(System.currentTimeMillis(), 36);
+
+    // Only touched by the dispatcher thread
+    private final Deque<Sent> recent = new ArrayDeque<>();
+
+    private long sequence;
+
+    private final int replaySize;
+
+    private final int maxSubscribers;
+
+    private final long timeoutMillis;
+
+    private final int queueSize;
+
+    public SessionEventBroadcaster(SessionRepository sessionRepository,
+                                   ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${oc.app.events.replaySize:1000}") int replaySize,
+                                   @Value("${oc.app.events.maxSubscribers:10000}") int maxSubscribers,
+                                   @Value("${oc.app.events.timeoutMillis:1800000}") long timeoutMillis,
+                                   @Value("${oc.app.events.heartbeatSeconds:15}") long heartbeatSeconds,
+                                   @Value("${oc.app.events.queueSize:1000}") int queueSize,
+                                   @Value("${oc.app.events.senderThreads:4}") int senderThreads) {
+        this.sessionRepository = sessionRepository;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.replaySize = replaySize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMillis = timeoutMillis;
+        this.queueSize = queueSize;
+        this.senders = Executors.newFixedThreadPool(senderThreads, new CustomizableThreadFactory("session-events-send-"));
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("session-events-"));
+        this.dispatcher.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+
+        meterRegistry.gauge("sessions.events.subscribers", subscribers, Set::size);
+        this.overflows = meterRegistry.counter("sessions.events.overflows");
+    }
+
+    /**
+     * @param lastEventId the {@code Last-Event-ID} of a reconnecting client, or {@code null}
+     * @throws ServiceUnavailableException when {@code oc.app.events.maxSubscribers} are connected
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new ServiceUnavailableException("Too many event subscribers, retry shortly");
+        }
+
+        SseEmitter emitter = newEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        // Replayed on the dispatcher, so no event can slip in between the replay and the live feed
+        dispatcher.execute(() -> replay(subscriber, lastEventId));
+        return emitter;
+    }
+
+    SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    /**
+     * Runs after commit, so rolled back changes are never pushed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionChanged(SessionChangedEvent event) {
+        if (event.getType() == SessionChangedEvent.Type.WAITLISTED) {
+            return;
+        }
+
+        pending.add(event);
+        dispatcher.execute(this::dispatch);
+    }
+
+    private void replay(Subscriber subscriber, String lastEventId) {
+        if (lastEventId != null) {
+            long first = recent.isEmpty() ? sequence + 1 : recent.peekFirst().sequence;
+            Long after = sequenceOf(lastEventId);
+
+            // More missed events than the subscriber's queue holds are not worth replaying either
+            if (after == null || after < first - 1 || after > sequence || sequence - after > queueSize) {
+                if (!subscriber.offer(SseEmitter.event().name(RESET).data("{}"))) {
+                    return;
+                }
+            } else {
+                for (Sent sent : recent) {
+                    if (sent.sequence > after && !subscriber.offer(sent.toEvent())) {
+                        return;
+                    }
+                }
+            }
+        }
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Sends whatever is pending. Repeated changes to one session within a burst, such as the
+     * joins of a bulk enrollment, go out as a single event.
+     */
+    private void dispatch() {
+        Map<String, SessionChangedEvent> burst = new LinkedHashMap<>();
+        for (SessionChangedEvent event = pending.poll(); event != null; event = pending.poll()) {
+            String key = name(event.getType()) + ':' + event.getSessionId();
+            burst.remove(key);
+            burst.put(key, event);
+        }
+        if (burst.isEmpty()) {
+            return;
+        }
+        if (subscribers.isEmpty()) {
+            // Nobody to tell, so no seat read; a client resuming across this gap reloads instead
+            recent.clear();
+            sequence++;
+            return;
+        }
+
+        Map<Long, SessionRepository.Seats> seats;
+        try {
+            List<Long> ids = burst.values().stream()
+                    .filter(event -> event.getType() != SessionChangedEvent.Type.DELETED)
+                    .map(SessionChangedEvent::getSessionId)
+                    .distinct()
+                    .collect(Collectors.toList());
+            seats = ids.isEmpty()
+                    ? new LinkedHashMap<>()
+                    : sessionRepository.findSeats(ids).stream()
+                    .collect(Collectors.toMap(SessionRepository.Seats::getId, Function.identity()));
+        } catch (DataAccessException e) {
+            logger.warn("Dropped {} session events, seat counts could not be read", burst.size(), e);
+            return;
+        }
+
+        for (SessionChangedEvent event : burst.values()) {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("sessionId", event.getSessionId());
+            if (event.getType() != SessionChangedEvent.Type.DELETED) {
+                SessionRepository.Seats current = seats.get(event.getSessionId());
+                if (current == null) {
+                    // Deleted since; its own event follows
+                    continue;
+                }
+                data.put("capacity", current.getCapacity());
+                data.put("seatsTaken", current.getSeatsTaken());
+            }
+
+            Sent sent;
+            try {
+                sent = new Sent(++sequence, name(event.getType()), objectMapper.writeValueAsString(data));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+            recent.addLast(sent);
+            if (recent.size() > replaySize) {
+                recent.removeFirst();
+            }
+
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(sent.toEvent());
+            }
+            meterRegistry.counter("sessions.events.published", "event", sent.name).increment();
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(SseEmitter.event().comment("keep-alive"));
+        }
+    }
+
+    private Long sequenceOf(String eventId) {
+        int separator = eventId.lastIndexOf('-');
+        if (separator < 0 || !generation.equals(eventId.substring(0, separator))) {
+            return null;
+        }
+
+        try {
+            return Long.valueOf(eventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String name(SessionChangedEvent.Type type) {
+        switch (type) {
+            case CREATED:
+                return "session.created";
+            case UPDATED:
+                return "session.updated";
+            case DELETED:
+                return "session.deleted";
+            default:
+                return "session.seats";
+        }
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    /**
+     * One connection. At most one sender thread drains its queue at a time, so its events go out
+     * in order, and only that thread ever blocks on a slow client.
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+
+        // Linked, so an idle subscriber holds no buffer
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue = new LinkedBlockingQueue<>(queueSize);
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        private volatile boolean overflowed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Never blocks. A full queue disconnects the subscriber.
+         *
+         * @return {@code false} when the subscriber is gone, in which case it is unsubscribed
+         */
+        private boolean offer(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return false;
+            }
+            if (!queue.offer(event)) {
+                overflows.increment();
+                overflowed = true;
+                close();
+            }
+            schedule();
+            return !closed;
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                SseEmitter.SseEventBuilder event;
+                while (!closed && (event = queue.poll()) != null) {
+                    try {
+                        emitter.send(event);
+                    } catch (IOException | IllegalStateException e) {
+                        close();
+                    }
+                }
+                if (closed) {
+                    queue.clear();
+                    if (overflowed) {
+                        emitter.complete();
+                    }
+                    return;
+                }
+                draining.set(false);
+            } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+        }
+    }
+
+    private final class Sent {
+        private final long sequence;
+
+        private final String name;
+
+        private final String data;
+
+        private Sent(long sequence, String name, String data) {
+            this.sequence = sequence;
+            this.name = name;
+            this.data = data;
+        }
+
+        private SseEmitter.SseEventBuilder toEvent() {
+            return SseEmitter.event().id(generation + '-' + sequence).name(name).data(data);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.openclassrooms.starterjwt.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by {@code UserService} inside the transaction that deletes the user.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class UserDeletedEvent {
+    private final Long userId;
+}
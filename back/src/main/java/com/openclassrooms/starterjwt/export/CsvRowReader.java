@@ -0,0 +1,76 @@
+package com.openclassrooms.starterjwt.export;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 CSV one record at a time: quoted cells may hold commas, doubled quotes and
+ * line breaks, and lines may end with CRLF or LF.
+ */
+public class CsvRowReader {
+    private final Reader reader;
+
+    private int next;
+
+    private int line = 1;
+
+    public CsvRowReader(Reader reader) throws IOException {
+        this.reader = reader;
+        this.next = reader.read();
+    }
+
+    /**
+     * @return the line the next record starts on
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return the cells of the next record, or {@code null} at the end of the input
+     */
+    public String[] read() throws IOException {
+        if (next < 0) {
+            return null;
+        }
+
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        while (next >= 0) {
+            char c = (char) advance();
+            if (quoted) {
+                if (c == '"' && next == '"') {
+                    cell.append('"');
+                    advance();
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"' && cell.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r' || next != '\n') {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells.toArray(new String[0]);
+    }
+
+    private int advance() throws IOException {
+        int current = next;
+        if (current == '\n') {
+            line++;
+        }
+        next = reader.read();
+        return current;
+    }
+}
@@ -0,0 +1,52 @@
+package com.openclassrooms.starterjwt.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * RFC 4180 CSV. Text cells that a spreadsheet would evaluate as a formula are prefixed with a
+ * quote, since names and descriptions are user input.
+ */
+class CsvRowWriter implements RowWriter {
+    private final Writer writer;
+
+    CsvRowWriter(OutputStream out, List<String> columns, boolean header) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (header) {
+            write(columns.toArray());
+        }
+    }
+
+    @Override
+    public void write(Object[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (row[i] != null) {
+                writer.write(row[i] instanceof String ? cell((String) row[i]) : row[i].toString());
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    static String cell(String value) {
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,50 @@
+package com.openclassrooms.starterjwt.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public enum ExportFormat {
+    NDJSON("ndjson", new MediaType("application", "x-ndjson")),
+    CSV("csv", new MediaType("text", "csv", StandardCharsets.UTF_8));
+
+    private final String extension;
+
+    private final MediaType mediaType;
+
+    ExportFormat(String extension, MediaType mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public static ExportFormat of(String name) {
+        for (ExportFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new BadRequestException("Unknown export format: " + name);
+    }
+
+    /**
+     * @param header whether to start with a header line, for formats that have one
+     */
+    public RowWriter open(OutputStream out, List<String> columns, boolean header, JsonFactory jsonFactory) throws IOException {
+        return this == NDJSON
+                ? new NdjsonRowWriter(jsonFactory, out, columns)
+                : new CsvRowWriter(out, columns, header);
+    }
+}
@@ -0,0 +1,51 @@
+package com.openclassrooms.starterjwt.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * One JSON object per line, keyed by column name.
+ */
+class NdjsonRowWriter implements RowWriter {
+    private final JsonGenerator generator;
+
+    private final List<String> columns;
+
+    NdjsonRowWriter(JsonFactory jsonFactory, OutputStream out, List<String> columns) throws IOException {
+        this.generator = jsonFactory.createGenerator(out);
+        this.generator.setRootValueSeparator(null);
+        this.columns = columns;
+    }
+
+    @Override
+    public void write(Object[] row) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < columns.size(); i++) {
+            generator.writeFieldName(columns.get(i));
+            writeValue(row[i]);
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof Number) {
+            generator.writeNumber(value.toString());
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
@@ -0,0 +1,12 @@
+package com.openclassrooms.starterjwt.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Serializes export rows one at a time, so nothing but the current row is held in memory.
+ * Closing flushes the writer and the underlying stream.
+ */
+public interface RowWriter extends Closeable {
+    void write(Object[] row) throws IOException;
+}
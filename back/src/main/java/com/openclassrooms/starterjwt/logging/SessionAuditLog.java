@@ -0,0 +1,80 @@
+package com.openclassrooms.starterjwt.logging;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Writes one structured line per session mutation to the {@code audit} logger, which
+ * logback hands to an async appender. Only ids and the names of changed fields are
+ * recorded, never entity state, so no personal data or password hash can reach it.
+ */
+@Component
+public class SessionAuditLog {
+    static final String LOGGER_NAME = "audit";
+
+    public static final String CREATED = "session.created";
+    public static final String UPDATED = "session.updated";
+    public static final String DELETED = "session.deleted";
+    public static final String JOINED = "session.joined";
+    public static final String WAITLISTED = "session.waitlisted";
+    public static final String LEFT = "session.left";
+
+    private static final Logger logger = LoggerFactory.getLogger(LOGGER_NAME);
+
+    public void record(String action, Long sessionId) {
+        record(action, sessionId, null, Collections.emptyList());
+    }
+
+    public void record(String action, Long sessionId, Long userId) {
+        record(action, sessionId, userId, Collections.emptyList());
+    }
+
+    /**
+     * Inside a transaction the line is written after commit, so rolled back mutations are
+     * never audited.
+     */
+    public void record(String action, Long sessionId, Long userId, Collection<String> changedFields) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+
+        Long actorId = currentActorId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    write(action, sessionId, userId, actorId, changedFields);
+                }
+            });
+        } else {
+            write(action, sessionId, userId, actorId, changedFields);
+        }
+    }
+
+    private static void write(String action, Long sessionId, Long userId, Long actorId, Collection<String> changedFields) {
+        logger.info("action={} session_id={} user_id={} actor_id={} fields={}",
+                action,
+                sessionId,
+                userId != null ? userId : "-",
+                actorId != null ? actorId : "-",
+                changedFields);
+    }
+
+    private static Long currentActorId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserDetailsImpl)) {
+            return null;
+        }
+
+        return ((UserDetailsImpl) authentication.getPrincipal()).getId();
+    }
+}
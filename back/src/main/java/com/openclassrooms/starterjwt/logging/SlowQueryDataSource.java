@@ -0,0 +1,160 @@
+package com.openclassrooms.starterjwt.logging;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Times every JDBC execution and hands slow ones to a {@link SlowQueryLog}. Fast statements
+ * cost one {@code System.nanoTime()} pair; only result sets of statements already over the
+ * threshold are wrapped to count rows, which are logged when the result set is closed.
+ */
+public class SlowQueryDataSource extends DelegatingDataSource {
+    private final SlowQueryLog slowQueryLog;
+
+    public SlowQueryDataSource(DataSource target, SlowQueryLog slowQueryLog) {
+        super(target);
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            String name = method.getName();
+
+            if (result instanceof Statement && (name.equals("prepareStatement") || name.equals("prepareCall"))) {
+                return proxy(method.getReturnType(), result, new StatementHandler((Statement) result, (String) args[0]));
+            }
+            if (result instanceof Statement && name.equals("createStatement")) {
+                return proxy(method.getReturnType(), result, new StatementHandler((Statement) result, null));
+            }
+            return result;
+        });
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+
+        private final String sql;
+
+        private final List<String> parameterTypes = new ArrayList<>();
+
+        StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.startsWith("execute")) {
+                long start = System.nanoTime();
+                Object result = SlowQueryDataSource.invoke(target, method, args);
+                long elapsed = System.nanoTime() - start;
+
+                if (!slowQueryLog.isSlow(elapsed)) {
+                    return result;
+                }
+
+                String executed = sql != null ? sql : (args != null && args.length > 0 ? (String) args[0] : null);
+                if (result instanceof ResultSet) {
+                    return countingResultSet((ResultSet) result, executed, elapsed, parameterTypes());
+                }
+                slowQueryLog.record(executed, elapsed, parameterTypes(), rows(result));
+                return result;
+            }
+
+            if (sql != null && args != null && args.length >= 2 && args[0] instanceof Integer && name.startsWith("set")) {
+                recordParameterType((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameterTypes.clear();
+            }
+
+            return SlowQueryDataSource.invoke(target, method, args);
+        }
+
+        private void recordParameterType(int index, Object value) {
+            while (parameterTypes.size() < index) {
+                parameterTypes.add("?");
+            }
+            parameterTypes.set(index - 1, value == null ? "null" : value.getClass().getSimpleName());
+        }
+
+        private List<String> parameterTypes() {
+            return parameterTypes.isEmpty() ? Collections.emptyList() : new ArrayList<>(parameterTypes);
+        }
+    }
+
+    private ResultSet countingResultSet(ResultSet resultSet, String sql, long elapsed, List<String> parameterTypes) {
+        long[] rows = {0};
+        boolean[] logged = {false};
+
+        return proxy(ResultSet.class, resultSet, (proxy, method, args) -> {
+            Object result = invoke(resultSet, method, args);
+
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                rows[0]++;
+            } else if (method.getName().equals("close") && !logged[0]) {
+                logged[0] = true;
+                slowQueryLog.record(sql, elapsed, parameterTypes, rows[0]);
+            }
+            return result;
+        });
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof Number) {
+            return ((Number) result).longValue();
+        }
+        if (result instanceof int[]) {
+            long total = 0;
+            for (int count : (int[]) result) {
+                total += Math.max(count, 0);
+            }
+            return total;
+        }
+        if (result instanceof long[]) {
+            long total = 0;
+            for (long count : (long[]) result) {
+                total += Math.max(count, 0);
+            }
+            return total;
+        }
+        return -1;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(target.getClass().getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
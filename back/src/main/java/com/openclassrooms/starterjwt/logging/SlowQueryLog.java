@@ -0,0 +1,66 @@
+package com.openclassrooms.starterjwt.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which statements are slow enough to log and writes one structured line per sampled
+ * slow statement to the {@code sql.slow} logger. Bind parameters are reported by type only,
+ * never by value.
+ */
+public class SlowQueryLog {
+    static final String LOGGER_NAME = "sql.slow";
+
+    private static final Logger logger = LoggerFactory.getLogger(LOGGER_NAME);
+
+    private final long thresholdNanos;
+
+    private final double sampleRate;
+
+    public SlowQueryLog(long thresholdMs, double sampleRate) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.sampleRate = sampleRate;
+    }
+
+    boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos
+                && (sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * @param rows rows read or affected, {@code -1} when the driver does not say
+     */
+    void record(String sql, long elapsedNanos, List<String> parameterTypes, long rows) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+
+        logger.info("slow_query elapsed_ms={} rows={} endpoint=\"{}\" params={} sql=\"{}\"",
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                rows,
+                currentEndpoint(),
+                parameterTypes,
+                sql == null ? "" : sql.replace('"', '\'').replaceAll("\\s+", " "));
+    }
+
+    private static String currentEndpoint() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return "-";
+        }
+
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String endpoint = request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+        return endpoint.trim().isEmpty() ? "-" : endpoint.trim();
+    }
+}
@@ -0,0 +1,31 @@
+package com.openclassrooms.starterjwt.logging;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application {@link DataSource} in a {@link SlowQueryDataSource} unless
+ * {@code oc.app.sql.slowQueryThresholdMs} is negative.
+ */
+@Configuration
+public class SlowQueryLogConfig {
+    @Bean
+    public static BeanPostProcessor slowQueryDataSourcePostProcessor(Environment environment) {
+        long thresholdMs = environment.getProperty("oc.app.sql.slowQueryThresholdMs", Long.class, 200L);
+        double sampleRate = environment.getProperty("oc.app.sql.slowQuerySampleRate", Double.class, 1.0);
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (thresholdMs < 0 || !(bean instanceof DataSource) || bean instanceof SlowQueryDataSource) {
+                    return bean;
+                }
+                return new SlowQueryDataSource((DataSource) bean, new SlowQueryLog(thresholdMs, sampleRate));
+            }
+        };
+    }
+}
@@ -1,19 +1,28 @@
 package com.openclassrooms.starterjwt.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
+import org.mapstruct.Named;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component
@@ -27,16 +36,93 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
 
     @Mappings({
             @Mapping(source = "description", target = "description"),
-            @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherService.findById(sessionDto.getTeacher_id()) : null)"),
-            @Mapping(target = "users", expression = "java(Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream().map(user_id -> { User user = this.userService.findById(user_id); if (user != null) { return user; } return null; }).collect(Collectors.toList()))"),
+            @Mapping(target = "teacher", expression = "java(this.resolveTeacher(sessionDto.getTeacher_id()))"),
+            @Mapping(target = "users", expression = "java(this.resolveUsers(sessionDto.getUsers()))"),
+            @Mapping(target = "seatsTaken", ignore = true),
     })
     public abstract Session toEntity(SessionDto sessionDto);
 
+    protected Teacher resolveTeacher(Long teacherId) {
+        if (teacherId == null) {
+            return null;
+        }
+
+        Teacher teacher = this.teacherService.findById(teacherId);
+        if (teacher == null) {
+            throw new BadRequestException("Unknown teacher id: " + teacherId);
+        }
+        return teacher;
+    }
+
+    protected List<User> resolveUsers(List<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<Long> distinctIds = new LinkedHashSet<>(userIds);
+        Map<Long, User> usersById = this.userService.findAllById(distinctIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        List<Long> unknownIds = distinctIds.stream()
+                .filter(id -> !usersById.containsKey(id))
+                .collect(Collectors.toList());
+        if (!unknownIds.isEmpty()) {
+            throw new BadRequestException("Unknown user ids: " + unknownIds);
+        }
+
+        return distinctIds.stream().map(usersById::get).collect(Collectors.toList());
+    }
+
 
     @Mappings({
             @Mapping(source = "description", target = "description"),
             @Mapping(source = "session.teacher.id", target = "teacher_id"),
             @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
+            @Mapping(target = "participantCount", ignore = true),
     })
     public abstract SessionDto toDto(Session session);
+
+    @Named("withoutParticipants")
+    @Mappings({
+            @Mapping(source = "description", target = "description"),
+            @Mapping(source = "session.teacher.id", target = "teacher_id"),
+            @Mapping(target = "users", ignore = true),
+            @Mapping(target = "participantCount", ignore = true),
+    })
+    public abstract SessionDto toDtoWithoutParticipants(Session session);
+
+    public SessionDto toDto(Session session, List<Long> participantIds) {
+        SessionDto sessionDto = this.toDtoWithoutParticipants(session);
+        sessionDto.setUsers(participantIds);
+        return sessionDto;
+    }
+
+    public List<SessionDto> toDto(List<Session> sessions, Map<Long, List<Long>> participantIds) {
+        return sessions.stream()
+                .map(session -> this.toDto(session, participantIds.getOrDefault(session.getId(), Collections.emptyList())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Maps sessions without their roster, counting participants from the seat counter.
+     */
+    public List<SessionDto> toSummaryDto(List<Session> sessions) {
+        return sessions.stream()
+                .map(session -> {
+                    SessionDto sessionDto = this.toDtoWithoutParticipants(session);
+                    sessionDto.setParticipantCount((long) session.getSeatsTaken());
+                    return sessionDto;
+                })
+                .collect(Collectors.toList());
+    }
+
+    public List<SessionDto> toDtoWithCounts(List<Session> sessions, Map<Long, Long> participantCounts) {
+        return sessions.stream()
+                .map(session -> {
+                    SessionDto sessionDto = this.toDtoWithoutParticipants(session);
+                    sessionDto.setParticipantCount(participantCounts.getOrDefault(session.getId(), 0L));
+                    return sessionDto;
+                })
+                .collect(Collectors.toList());
+    }
 }
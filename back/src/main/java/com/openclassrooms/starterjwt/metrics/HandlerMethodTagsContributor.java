@@ -0,0 +1,35 @@
+package com.openclassrooms.starterjwt.metrics;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsContributor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Tags {@code http.server.requests} with the controller method that served the request,
+ * e.g. {@code handler="SessionController.findAll"}, so each endpoint gets its own timer.
+ */
+@Component
+public class HandlerMethodTagsContributor implements WebMvcTagsContributor {
+    private static final Tag NONE = Tag.of("handler", "none");
+
+    @Override
+    public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response,
+                                 Object handler, Throwable exception) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod method = (HandlerMethod) handler;
+            return Tags.of("handler", method.getBeanType().getSimpleName() + "." + method.getMethod().getName());
+        }
+
+        return Tags.of(NONE);
+    }
+
+    @Override
+    public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+        return Tags.empty();
+    }
+}
@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.migration;
+
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.callback.Callback;
+import org.flywaydb.core.api.callback.Context;
+import org.flywaydb.core.api.callback.Event;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stops the migration to V2, which makes {@code USERS.email} unique, when a database adopted
+ * from the old hand-run script holds the same email on several accounts. Which account keeps
+ * the email cannot be decided here, so the error names the emails to merge or delete first.
+ */
+@Component
+public class DuplicateEmailCheck implements Callback {
+    static final MigrationVersion UNIQUE_EMAIL_VERSION = MigrationVersion.fromVersion("2");
+
+    private static final int MAX_LISTED = 20;
+
+    @Override
+    public boolean supports(Event event, Context context) {
+        return event == Event.BEFORE_EACH_MIGRATE
+                && context.getMigrationInfo() != null
+                && UNIQUE_EMAIL_VERSION.equals(context.getMigrationInfo().getVersion());
+    }
+
+    @Override
+    public boolean canHandleInTransaction(Event event, Context context) {
+        return true;
+    }
+
+    @Override
+    public void handle(Event event, Context context) {
+        List<String> duplicates = new ArrayList<>();
+        int total = 0;
+
+        try (Statement statement = context.getConnection().createStatement();
+             ResultSet rows = statement.executeQuery("SELECT email, COUNT(*) FROM USERS WHERE email IS NOT NULL"
+                     + " GROUP BY email HAVING COUNT(*) > 1 ORDER BY email")) {
+            while (rows.next()) {
+                if (total++ < MAX_LISTED) {
+                    duplicates.add(rows.getString(1) + " (" + rows.getLong(2) + " accounts)");
+                }
+            }
+        } catch (SQLException e) {
+            throw new FlywayException("Could not look for duplicate emails in USERS", e);
+        }
+
+        if (total > 0) {
+            throw new FlywayException("USERS holds " + total + " email(s) on more than one account, merge or delete"
+                    + " the extra accounts before migrating to V2: " + String.join(", ", duplicates)
+                    + (total > MAX_LISTED ? ", ..." : ""));
+        }
+    }
+
+    @Override
+    public String getCallbackName() {
+        return "duplicate email check";
+    }
+}
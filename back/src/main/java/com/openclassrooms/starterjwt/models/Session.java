@@ -3,11 +3,15 @@ package com.openclassrooms.starterjwt.models;
 
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -17,6 +21,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "SESSIONS")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "session")
 @EntityListeners(AuditingEntityListener.class)
 @Data
 @Accessors(chain = true)
@@ -41,15 +46,32 @@ public class Session {
     @Size(max = 2500)
     private String description;
 
+    @Min(1)
+    private Integer capacity;
+
+    @Column(name = "seats_taken", insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private int seatsTaken;
+
+    /**
+     * Bumped by every statement that changes the session or its roster; backs the ETag.
+     */
+    @Column(name = "revision", insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private long revision;
+
     @OneToOne
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
-            inverseJoinColumns = @JoinColumn( name = "user_id" ) )
+            inverseJoinColumns = @JoinColumn( name = "user_id" ),
+            uniqueConstraints = @UniqueConstraint(columnNames = {"session_id", "user_id"}) )
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "session-users")
+    @ToString.Exclude
     private List<User> users;
 
     @CreatedDate
@@ -0,0 +1,104 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.dto.ChangeDto;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The CHANGE_LOG outbox. Changes are collected during the transaction that makes them and
+ * written in one batch once Hibernate has flushed, right before the commit. A failed write rolls
+ * the transaction back, so no committed change goes unlogged.
+ * <p>
+ * Ids come from the AUTO_INCREMENT column and no lock is taken, so concurrent writers never wait
+ * on each other. Because the batch is the last statement before the commit, an id is only ever
+ * visible late by the few milliseconds that commit takes. Readers therefore stop at rows older
+ * than a settle delay, by which time every lower id has committed or rolled back.
+ */
+@Repository
+public class ChangeLogRepository {
+    private static final String INSERT = "INSERT INTO CHANGE_LOG (entity, entity_id, action, user_id) VALUES (?, ?, ?, ?)";
+
+    private static final String FIND_AFTER = "SELECT id, entity, entity_id, action, user_id, changed_at"
+            + " FROM CHANGE_LOG WHERE id > ? AND changed_at <= TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP)"
+            + " ORDER BY id LIMIT ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ChangeLogRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @throws InvalidDataAccessApiUsageException outside a transaction, where the change could
+     *         commit unlogged
+     */
+    public void append(String entity, Long entityId, String action, Long userId) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new InvalidDataAccessApiUsageException("Changes are logged by the transaction that makes them");
+        }
+
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new Pending();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(ChangeLogRepository.this);
+                }
+            });
+            entityManager.unwrap(SessionImplementor.class).getActionQueue().registerProcess(pending);
+        }
+        pending.rows.add(new Object[]{entity, entityId, action, userId});
+    }
+
+    /**
+     * Changes in id order, starting after {@code afterId}, leaving out those logged within the
+     * last {@code settleSeconds} by the database clock.
+     */
+    public List<ChangeDto> findAfter(long afterId, int settleSeconds, int limit) {
+        return jdbcTemplate.query(FIND_AFTER, (ResultSet rs, int row) -> new ChangeDto(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getLong(3),
+                rs.getString(4),
+                rs.getObject(5) != null ? rs.getLong(5) : null,
+                rs.getTimestamp(6).toInstant()), afterId, -settleSeconds, limit);
+    }
+
+    private static final class Pending implements BeforeTransactionCompletionProcess {
+        private final List<Object[]> rows = new ArrayList<>();
+
+        @Override
+        public void doBeforeTransactionCompletion(SessionImplementor session) {
+            session.doWork(connection -> {
+                try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                    for (Object[] row : rows) {
+                        insert.setString(1, (String) row[0]);
+                        insert.setLong(2, (Long) row[1]);
+                        insert.setString(3, (String) row[2]);
+                        insert.setObject(4, row[3], Types.BIGINT);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+
+import java.util.List;
+
+public interface SessionBulkInsert {
+    /**
+     * Inserts new sessions and their rosters as two JDBC batches in the current transaction, and
+     * sets the generated ids on the given sessions. The seat counter is taken from the roster.
+     */
+    void insertAll(List<Session> sessions);
+}
@@ -1,9 +1,200 @@
 package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+
+/**
+ * Native writes name the tables they touch, so Hibernate only invalidates the matching cache
+ * regions instead of every second-level cache region. Roster writes must be followed by
+ * {@link #evictRoster(Long)}: Hibernate does not tie the cached roster to {@code PARTICIPATE}.
+ */
 @Repository
-public interface SessionRepository  extends JpaRepository<Session, Long> {
+public interface SessionRepository  extends JpaRepository<Session, Long>, SessionRosterCache, SessionBulkInsert {
+    @Override
+    @EntityGraph(attributePaths = "teacher")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    List<Session> findAll();
+
+    @EntityGraph(attributePaths = "teacher")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    @Query("select s from Session s"
+            + " where (:teacherId is null or s.teacher.id = :teacherId)"
+            + " and (:from is null or s.date >= :from)"
+            + " and (:to is null or s.date < :to)"
+            + " and (:afterDate is null or s.date > :afterDate or (s.date = :afterDate and s.id > :afterId))"
+            + " order by s.date asc, s.id asc")
+    Slice<Session> findPage(@Param("teacherId") Long teacherId,
+                            @Param("from") Date from,
+                            @Param("to") Date to,
+                            @Param("afterDate") Date afterDate,
+                            @Param("afterId") Long afterId,
+                            Pageable pageable);
+
+    /**
+     * Sessions joined by a user from {@code afterDate} on, soonest first, with their teachers. The
+     * scan starts from the user's participations ({@code IDX_PARTICIPATE_USER}) and never reads the
+     * other participants.
+     */
+    @EntityGraph(attributePaths = "teacher")
+    @Query("select s from Session s join s.users u"
+            + " where u.id = :userId"
+            + " and (s.date > :afterDate or (s.date = :afterDate and s.id > :afterId))"
+            + " order by s.date asc, s.id asc")
+    Slice<Session> findJoinedAfter(@Param("userId") Long userId,
+                                   @Param("afterDate") Date afterDate,
+                                   @Param("afterId") Long afterId,
+                                   Pageable pageable);
+
+    /**
+     * Sessions joined by a user before {@code beforeDate}, most recent first.
+     */
+    @EntityGraph(attributePaths = "teacher")
+    @Query("select s from Session s join s.users u"
+            + " where u.id = :userId"
+            + " and (s.date < :beforeDate or (s.date = :beforeDate and s.id < :beforeId))"
+            + " order by s.date desc, s.id desc")
+    Slice<Session> findJoinedBefore(@Param("userId") Long userId,
+                                    @Param("beforeDate") Date beforeDate,
+                                    @Param("beforeId") Long beforeId,
+                                    Pageable pageable);
+
+    @Query("select s.id as id, s.revision as revision, s.updatedAt as updatedAt from Session s where s.id = :id")
+    Optional<Version> findVersion(@Param("id") Long id);
+
+    @Query(value = "SELECT session_id AS sessionId, user_id AS userId FROM PARTICIPATE WHERE session_id IN (:sessionIds)",
+            nativeQuery = true)
+    List<Participant> findParticipants(@Param("sessionIds") Collection<Long> sessionIds);
+
+    @Query(value = "SELECT session_id AS sessionId, COUNT(*) AS participants FROM PARTICIPATE"
+            + " WHERE session_id IN (:sessionIds) GROUP BY session_id",
+            nativeQuery = true)
+    List<ParticipantCount> countParticipants(@Param("sessionIds") Collection<Long> sessionIds);
+
+    @Query(value = "SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId",
+            nativeQuery = true)
+    long countParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Query("select s.id as id, s.capacity as capacity, s.seatsTaken as seatsTaken from Session s where s.id in :ids")
+    List<Seats> findSeats(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "SELECT user_id FROM PARTICIPATE WHERE session_id = :sessionId AND user_id IN (:userIds)",
+            nativeQuery = true)
+    List<Long> findParticipantsAmong(@Param("sessionId") Long sessionId, @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Adds every listed user in one statement, skipping those already on the roster.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "PARTICIPATE"))
+    @Query(value = "INSERT INTO PARTICIPATE (session_id, user_id)"
+            + " SELECT :sessionId, u.id FROM USERS u WHERE u.id IN (:userIds)"
+            + " AND NOT EXISTS (SELECT 1 FROM PARTICIPATE p WHERE p.session_id = :sessionId AND p.user_id = u.id)",
+            nativeQuery = true)
+    int addParticipants(@Param("sessionId") Long sessionId, @Param("userIds") Collection<Long> userIds);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "PARTICIPATE"))
+    @Query(value = "DELETE FROM PARTICIPATE WHERE session_id = :sessionId AND user_id IN (:userIds)", nativeQuery = true)
+    int removeParticipants(@Param("sessionId") Long sessionId, @Param("userIds") Collection<Long> userIds);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "PARTICIPATE"))
+    @Query(value = "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (:sessionId, :userId)", nativeQuery = true)
+    int addParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "PARTICIPATE"))
+    @Query(value = "DELETE FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    int removeParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "SESSIONS"))
+    @Query(value = "UPDATE SESSIONS SET seats_taken = seats_taken + 1, revision = revision + 1, updated_at = CURRENT_TIMESTAMP"
+            + " WHERE id = :id AND (capacity IS NULL OR seats_taken < capacity)",
+            nativeQuery = true)
+    int reserveSeat(@Param("id") Long id);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "SESSIONS"))
+    @Query(value = "UPDATE SESSIONS SET seats_taken = seats_taken - 1, revision = revision + 1, updated_at = CURRENT_TIMESTAMP"
+            + " WHERE id = :id AND seats_taken > 0",
+            nativeQuery = true)
+    int releaseSeat(@Param("id") Long id);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "SESSIONS"))
+    @Query(value = "UPDATE SESSIONS SET seats_taken = seats_taken + :count, revision = revision + 1, updated_at = CURRENT_TIMESTAMP"
+            + " WHERE id = :id AND (capacity IS NULL OR seats_taken + :count <= capacity)",
+            nativeQuery = true)
+    int reserveSeats(@Param("id") Long id, @Param("count") int count);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "SESSIONS"))
+    @Query(value = "UPDATE SESSIONS SET seats_taken = seats_taken - :count, revision = revision + 1, updated_at = CURRENT_TIMESTAMP"
+            + " WHERE id = :id AND seats_taken >= :count",
+            nativeQuery = true)
+    int releaseSeats(@Param("id") Long id, @Param("count") int count);
+
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "SESSIONS"))
+    @Query(value = "UPDATE SESSIONS SET seats_taken = (SELECT COUNT(*) FROM PARTICIPATE p WHERE p.session_id = :id)"
+            + ", revision = revision + 1, updated_at = CURRENT_TIMESTAMP WHERE id = :id",
+            nativeQuery = true)
+    int syncSeatsTaken(@Param("id") Long id);
+
+    /**
+     * Marks the roster as changed when it was edited without touching the seat counter.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = "SESSIONS"))
+    @Query(value = "UPDATE SESSIONS SET revision = revision + 1, updated_at = CURRENT_TIMESTAMP WHERE id = :id",
+            nativeQuery = true)
+    int touch(@Param("id") Long id);
+
+    interface Version {
+        Long getId();
+
+        long getRevision();
+
+        LocalDateTime getUpdatedAt();
+    }
+
+    interface Seats {
+        Long getId();
+
+        Integer getCapacity();
+
+        int getSeatsTaken();
+    }
+
+    interface Participant {
+        Long getSessionId();
+
+        Long getUserId();
+    }
+
+    interface ParticipantCount {
+        Long getSessionId();
+
+        Long getParticipants();
+    }
 }
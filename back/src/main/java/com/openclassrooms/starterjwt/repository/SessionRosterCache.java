@@ -0,0 +1,9 @@
+package com.openclassrooms.starterjwt.repository;
+
+public interface SessionRosterCache {
+    /**
+     * Invalidates the cached roster of one session for the rest of the current transaction and
+     * until it commits, like Hibernate does for a collection it updates itself.
+     */
+    void evictRoster(Long sessionId);
+}
@@ -0,0 +1,32 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+import org.hibernate.cache.spi.access.CollectionDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+class SessionRosterCacheImpl implements SessionRosterCache {
+    private static final String ROSTER_ROLE = Session.class.getName() + ".users";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void evictRoster(Long sessionId) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        CollectionPersister persister = session.getFactory().getMetamodel().collectionPersister(ROSTER_ROLE);
+        if (!persister.hasCache()) {
+            return;
+        }
+
+        // The soft lock keeps readers from caching the old roster until the transaction ends
+        CollectionDataAccess cache = persister.getCacheAccessStrategy();
+        Object key = cache.generateCacheKey(sessionId, persister, session.getFactory(), session.getTenantIdentifier());
+        SoftLock lock = cache.lockItem(session, key, null);
+        session.getActionQueue().registerProcess((success, completed) -> cache.unlockItem(completed, key, lock));
+    }
+}
@@ -17,26 +17,34 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+
+import io.jsonwebtoken.Claims;
 
 public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
-  private JwtUtils jwtUtils;
+  private JwtTokenCache jwtTokenCache;
 
   @Autowired
-  private UserDetailsServiceImpl userDetailsService;
+  private UserDetailsCache userDetailsCache;
 
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
+  /** Browsers' EventSource cannot set headers, so this stream also takes the token as a parameter. */
+  static final String EVENTS_PATH = "/api/session/events";
+
+  static final String TOKEN_PARAMETER = "access_token";
+
   @Override
   protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
       throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
+      Claims claims = jwt != null ? jwtTokenCache.getValidClaims(jwt) : null;
+      if (claims != null) {
+        String username = claims.getSubject();
 
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        UserDetails userDetails = userDetailsCache.loadUserByUsername(username);
         UsernamePasswordAuthenticationToken authentication =
             new UsernamePasswordAuthenticationToken(
                 userDetails,
@@ -60,6 +68,12 @@ public class AuthTokenFilter extends OncePerRequestFilter {
       return headerAuth.substring(7, headerAuth.length());
     }
 
+    if ("GET".equals(request.getMethod())
+        && (request.getContextPath() + EVENTS_PATH).equals(request.getRequestURI())) {
+      String parameter = request.getParameter(TOKEN_PARAMETER);
+      return StringUtils.hasText(parameter) ? parameter : null;
+    }
+
     return null;
   }
 }
@@ -0,0 +1,103 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Remembers recently verified tokens so that repeated requests with the same bearer token
+ * skip the HS512 signature check. Entries are keyed by a SHA-256 digest of the token, so raw
+ * tokens are never retained, and each entry expires at the token's own {@code exp}. The cache
+ * and the expiry checks read the same clock.
+ */
+@Component
+public class JwtTokenCache {
+  private final JwtUtils jwtUtils;
+
+  private final Clock clock;
+
+  private final Cache<String, Claims> verifiedTokens;
+
+  @Autowired
+  public JwtTokenCache(JwtUtils jwtUtils, @Value("${oc.app.jwtCacheSize:10000}") long maximumSize) {
+    this(jwtUtils, maximumSize, Clock.systemUTC());
+  }
+
+  JwtTokenCache(JwtUtils jwtUtils, long maximumSize, Clock clock) {
+    this.jwtUtils = jwtUtils;
+    this.clock = clock;
+    this.verifiedTokens = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfter(new Expiry<String, Claims>() {
+          @Override
+          public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            long remainingMs = claims.getExpiration().getTime() - clock.millis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMs, 0));
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+
+          @Override
+          public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+        .build();
+  }
+
+  /**
+   * @return the claims of a valid token, or {@code null} when the token is invalid
+   */
+  public Claims getValidClaims(String token) {
+    String key = digest(token);
+
+    Claims claims = verifiedTokens.getIfPresent(key);
+    if (claims != null) {
+      return claims;
+    }
+
+    claims = jwtUtils.parseValidClaims(token);
+    if (claims != null && isCacheable(claims)) {
+      verifiedTokens.put(key, claims);
+    }
+
+    return claims;
+  }
+
+  long size() {
+    verifiedTokens.cleanUp();
+    return verifiedTokens.estimatedSize();
+  }
+
+  private boolean isCacheable(Claims claims) {
+    Date expiration = claims.getExpiration();
+    return expiration != null && expiration.getTime() > clock.millis();
+  }
+
+  private static String digest(String token) {
+    try {
+      MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+      return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+}
@@ -4,6 +4,7 @@ import java.util.Date;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -11,6 +12,8 @@ import org.springframework.stereotype.Component;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 
 @Component
 public class JwtUtils {
@@ -22,6 +25,9 @@ public class JwtUtils {
   @Value("${oc.app.jwtExpirationMs}")
   private int jwtExpirationMs;
 
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
   public String generateJwtToken(Authentication authentication) {
 
     UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
@@ -39,21 +45,40 @@ public class JwtUtils {
   }
 
   public boolean validateJwtToken(String authToken) {
+    return parseValidClaims(authToken) != null;
+  }
+
+  /**
+   * Parses the token and checks its signature once.
+   *
+   * @return the token claims, or {@code null} when the token is invalid
+   */
+  public Claims parseValidClaims(String authToken) {
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      Claims claims = Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken).getBody();
+      countValidation("valid");
+      return claims;
     } catch (SignatureException e) {
       logger.error("Invalid JWT signature: {}", e.getMessage());
+      countValidation("invalid_signature");
     } catch (MalformedJwtException e) {
       logger.error("Invalid JWT token: {}", e.getMessage());
+      countValidation("malformed");
     } catch (ExpiredJwtException e) {
       logger.error("JWT token is expired: {}", e.getMessage());
+      countValidation("expired");
     } catch (UnsupportedJwtException e) {
       logger.error("JWT token is unsupported: {}", e.getMessage());
+      countValidation("unsupported");
     } catch (IllegalArgumentException e) {
       logger.error("JWT claims string is empty: {}", e.getMessage());
+      countValidation("empty");
     }
 
-    return false;
+    return null;
+  }
+
+  private void countValidation(String outcome) {
+    meterRegistry.counter("auth.jwt.validation", "outcome", outcome).increment();
   }
 }
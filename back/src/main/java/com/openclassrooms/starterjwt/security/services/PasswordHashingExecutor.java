@@ -0,0 +1,73 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Runs BCrypt hashing and verification on a small dedicated pool, so that login spikes cannot
+ * take over the servlet worker threads. When every thread is busy and the queue is full, new
+ * work is rejected at once with a 503 rather than piling up.
+ */
+@Component
+public class PasswordHashingExecutor implements DisposableBean {
+  public static final String LOGIN = "login";
+
+  public static final String REGISTER = "register";
+
+  private final ThreadPoolExecutor executor;
+
+  private final MeterRegistry meterRegistry;
+
+  private final Counter rejected;
+
+  public PasswordHashingExecutor(MeterRegistry meterRegistry,
+                                 @Value("${oc.app.passwordHashThreads:2}") int threads,
+                                 @Value("${oc.app.passwordHashQueueSize:64}") int queueSize) {
+    this.meterRegistry = meterRegistry;
+    this.executor = new ThreadPoolExecutor(
+        threads, threads,
+        0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        new CustomizableThreadFactory("password-hash-"),
+        new ThreadPoolExecutor.AbortPolicy());
+
+    meterRegistry.gauge("auth.password.hash.queue", executor, e -> e.getQueue().size());
+    meterRegistry.gauge("auth.password.hash.active", executor, ThreadPoolExecutor::getActiveCount);
+    this.rejected = meterRegistry.counter("auth.password.hash.rejected");
+  }
+
+  /**
+   * @param operation tag recorded on the {@code auth.password.hash} timer
+   * @throws ServiceUnavailableException when the pool and its queue are saturated
+   */
+  public <T> CompletableFuture<T> submit(String operation, Supplier<T> task) {
+    Timer timer = meterRegistry.timer("auth.password.hash", "operation", operation);
+
+    try {
+      return CompletableFuture.supplyAsync(() -> timer.record(task), executor);
+    } catch (RejectedExecutionException e) {
+      rejected.increment();
+      throw new ServiceUnavailableException("Too many authentication requests, retry shortly");
+    }
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdown();
+  }
+}
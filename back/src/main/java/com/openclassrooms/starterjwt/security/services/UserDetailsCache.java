@@ -0,0 +1,80 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * Bounded TTL cache of the principals built by {@code AuthTokenFilter}, keyed by email, so that
+ * authenticating a request with a valid token needs no database round trip. Cached principals
+ * never carry the password hash; login still goes through {@link UserDetailsServiceImpl}.
+ */
+@Component
+public class UserDetailsCache {
+  private final UserDetailsServiceImpl userDetailsService;
+
+  private final Cache<String, UserDetailsImpl> principals;
+
+  @Autowired
+  public UserDetailsCache(UserDetailsServiceImpl userDetailsService,
+                          @Value("${oc.app.userDetailsCacheSize:10000}") long maximumSize,
+                          @Value("${oc.app.userDetailsCacheTtlSeconds:300}") long ttlSeconds) {
+    this(userDetailsService, maximumSize, Duration.ofSeconds(ttlSeconds), Ticker.systemTicker());
+  }
+
+  UserDetailsCache(UserDetailsServiceImpl userDetailsService, long maximumSize, Duration ttl, Ticker ticker) {
+    this.userDetailsService = userDetailsService;
+    this.principals = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttl)
+        .ticker(ticker)
+        .build();
+  }
+
+  public UserDetailsImpl loadUserByUsername(String username) throws UsernameNotFoundException {
+    return principals.get(username, this::loadWithoutPassword);
+  }
+
+  /**
+   * Drops the cached principal of a user. Inside a transaction the eviction waits for the
+   * commit, so a concurrent request cannot cache the row again before the change is visible.
+   */
+  public void evict(Long userId) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          evictNow(userId);
+        }
+      });
+    } else {
+      evictNow(userId);
+    }
+  }
+
+  private void evictNow(Long userId) {
+    principals.asMap().values().removeIf(principal -> userId.equals(principal.getId()));
+  }
+
+  private UserDetailsImpl loadWithoutPassword(String username) {
+    UserDetailsImpl user = (UserDetailsImpl) userDetailsService.loadUserByUsername(username);
+
+    return UserDetailsImpl
+        .builder()
+        .id(user.getId())
+        .username(user.getUsername())
+        .firstName(user.getFirstName())
+        .lastName(user.getLastName())
+        .admin(user.getAdmin())
+        .build();
+  }
+}
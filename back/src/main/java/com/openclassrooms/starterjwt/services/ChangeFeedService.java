@@ -0,0 +1,78 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.ChangeDto;
+import com.openclassrooms.starterjwt.dto.ChangePageDto;
+import com.openclassrooms.starterjwt.events.SessionChangedEvent;
+import com.openclassrooms.starterjwt.events.UserDeletedEvent;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.repository.ChangeLogRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Feeds downstream systems the session and user changes in commit order. Changes are logged
+ * from the events published inside each mutating transaction, so they commit or roll back
+ * with it; consumers page through them with the id of the last change they applied. A change
+ * is listed {@code oc.app.changes.settleSeconds} after it is logged, once no lower id can still
+ * be in flight.
+ */
+@Service
+public class ChangeFeedService {
+    public static final String SESSION = "session";
+
+    public static final String USER = "user";
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private final ChangeLogRepository changeLogRepository;
+
+    private final int settleSeconds;
+
+    public ChangeFeedService(ChangeLogRepository changeLogRepository,
+                             @Value("${oc.app.changes.settleSeconds:5}") int settleSeconds) {
+        this.changeLogRepository = changeLogRepository;
+        this.settleSeconds = settleSeconds;
+    }
+
+    @EventListener
+    public void onSessionChanged(SessionChangedEvent event) {
+        this.changeLogRepository.append(SESSION, event.getSessionId(),
+                SESSION + '.' + event.getType().name().toLowerCase(), event.getUserId());
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+        this.changeLogRepository.append(USER, event.getUserId(), USER + ".deleted", null);
+    }
+
+    /**
+     * @param since the {@code nextCursor} of the previous page, or {@code null} for the whole feed
+     */
+    public ChangePageDto findSince(String since, Integer size) {
+        long afterId;
+        try {
+            afterId = since == null || since.isEmpty() ? 0L : Long.parseLong(since);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (afterId < 0 || pageSize < 1) {
+            throw new BadRequestException();
+        }
+        pageSize = Math.min(pageSize, MAX_PAGE_SIZE);
+
+        // One extra row tells whether another page follows
+        List<ChangeDto> changes = this.changeLogRepository.findAfter(afterId, this.settleSeconds, pageSize + 1);
+        boolean hasMore = changes.size() > pageSize;
+        if (hasMore) {
+            changes = changes.subList(0, pageSize);
+        }
+        long next = changes.isEmpty() ? afterId : changes.get(changes.size() - 1).getId();
+        return new ChangePageDto(changes, Long.toString(next), hasMore);
+    }
+}
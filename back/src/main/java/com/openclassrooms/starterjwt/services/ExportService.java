@@ -0,0 +1,87 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.export.RowWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streams reporting rows from a forward-only cursor straight into a {@link RowWriter}. Rows are
+ * read {@code oc.app.export.fetchSize} at a time (MySQL needs {@code useCursorFetch=true} for
+ * that) and written as they arrive, so memory does not grow with the table. Rows come in key
+ * order, so an interrupted download resumes from the last key it received.
+ */
+@Service
+public class ExportService {
+    public static final List<String> SESSION_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            "id", "name", "date", "description", "teacher_id", "capacity", "participant_count"));
+
+    public static final List<String> ATTENDANCE_COLUMNS = Collections.unmodifiableList(Arrays.asList(
+            "session_id", "session_name", "session_date",
+            "teacher_id", "teacher_first_name", "teacher_last_name",
+            "user_id", "user_email", "user_first_name", "user_last_name"));
+
+    private static final String SESSIONS_SQL = "SELECT id, name, date, description, teacher_id, capacity, seats_taken"
+            + " FROM SESSIONS WHERE id > ? ORDER BY id";
+
+    private static final String ATTENDANCE_SQL = "SELECT p.session_id, s.name, s.date,"
+            + " t.id, t.first_name, t.last_name,"
+            + " p.user_id, u.email, u.first_name, u.last_name"
+            + " FROM PARTICIPATE p"
+            + " JOIN SESSIONS s ON s.id = p.session_id"
+            + " JOIN USERS u ON u.id = p.user_id"
+            + " LEFT JOIN TEACHERS t ON t.id = s.teacher_id"
+            + " WHERE p.session_id > ? OR (p.session_id = ? AND p.user_id > ?)"
+            + " ORDER BY p.session_id, p.user_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ExportService(DataSource dataSource, @Value("${oc.app.export.fetchSize:500}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /**
+     * Sessions by id, starting after {@code afterId}.
+     */
+    public void exportSessions(long afterId, RowWriter writer) throws IOException {
+        stream(SESSIONS_SQL, SESSION_COLUMNS.size(), writer, afterId);
+    }
+
+    /**
+     * Participations by {@code (session_id, user_id)}, starting after the given pair.
+     */
+    public void exportAttendance(long afterSessionId, long afterUserId, RowWriter writer) throws IOException {
+        stream(ATTENDANCE_SQL, ATTENDANCE_COLUMNS.size(), writer, afterSessionId, afterSessionId, afterUserId);
+    }
+
+    private void stream(String sql, int columns, RowWriter writer, Object... args) throws IOException {
+        Object[] row = new Object[columns];
+        RowCallbackHandler handler = resultSet -> {
+            for (int i = 0; i < columns; i++) {
+                Object value = resultSet.getObject(i + 1);
+                row[i] = value instanceof Timestamp ? ((Timestamp) value).toInstant().toString() : value;
+            }
+            try {
+                writer.write(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        try {
+            this.jdbcTemplate.query(sql, handler, args);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Opaque keyset position in a session listing ordered by {@code (date, id)}, recording the
+ * direction it was issued for so it cannot be replayed against the other one.
+ */
+@Getter
+public class SessionCursor {
+    private static final String DESCENDING = "desc";
+
+    private final Date date;
+    private final Long id;
+    private final boolean descending;
+
+    public SessionCursor(Date date, Long id) {
+        this(date, id, false);
+    }
+
+    public SessionCursor(Date date, Long id, boolean descending) {
+        this.date = date;
+        this.id = id;
+        this.descending = descending;
+    }
+
+    public static SessionCursor of(Session session) {
+        return of(session, false);
+    }
+
+    public static SessionCursor of(Session session, boolean descending) {
+        return new SessionCursor(session.getDate(), session.getId(), descending);
+    }
+
+    public String encode() {
+        String raw = this.date.getTime() + ":" + this.id + (this.descending ? ":" + DESCENDING : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SessionCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", -1);
+            if (parts.length < 2 || parts.length > 3 || (parts.length == 3 && !DESCENDING.equals(parts[2]))) {
+                throw new BadRequestException();
+            }
+
+            return new SessionCursor(
+                    new Date(Long.parseLong(parts[0])),
+                    Long.valueOf(parts[1]),
+                    parts.length == 3);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException();
+        }
+    }
+
+    /**
+     * @throws BadRequestException when the cursor was issued for the other direction
+     */
+    static SessionCursor expect(SessionCursor cursor, boolean descending) {
+        if (cursor != null && cursor.descending != descending) {
+            throw new BadRequestException("Cursor was issued for the " + (cursor.descending ? "past" : "upcoming")
+                    + " sessions");
+        }
+        return cursor;
+    }
+}
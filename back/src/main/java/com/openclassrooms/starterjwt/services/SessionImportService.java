@@ -0,0 +1,284 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionImportReportDto;
+import com.openclassrooms.starterjwt.events.SessionChangedEvent;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.export.CsvRowReader;
+import com.openclassrooms.starterjwt.logging.SessionAuditLog;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Imports a term's worth of sessions in one request. Every row is validated, and its teacher
+ * and participants resolved with set-based lookups, before anything is written; a single
+ * invalid row rejects the whole import. Valid imports are then written in chunks of
+ * {@code oc.app.import.chunkSize} rows, one transaction and one JDBC batch per chunk, so a
+ * failing chunk only rolls back its own rows.
+ */
+@Service
+public class SessionImportService {
+    private static final int LOOKUP_BATCH_SIZE = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionImportService.class);
+
+    private final SessionRepository sessionRepository;
+
+    private final TeacherRepository teacherRepository;
+
+    private final UserRepository userRepository;
+
+    private final Validator validator;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final SessionAuditLog auditLog;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final int maxRows;
+
+    private final int chunkSize;
+
+    public SessionImportService(SessionRepository sessionRepository,
+                                TeacherRepository teacherRepository,
+                                UserRepository userRepository,
+                                Validator validator,
+                                TransactionTemplate transactionTemplate,
+                                SessionAuditLog auditLog,
+                                MeterRegistry meterRegistry,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${oc.app.import.maxRows:10000}") int maxRows,
+                                @Value("${oc.app.import.chunkSize:500}") int chunkSize) {
+        this.sessionRepository = sessionRepository;
+        this.teacherRepository = teacherRepository;
+        this.userRepository = userRepository;
+        this.validator = validator;
+        this.transactionTemplate = transactionTemplate;
+        this.auditLog = auditLog;
+        this.meterRegistry = meterRegistry;
+        this.eventPublisher = eventPublisher;
+        this.maxRows = maxRows;
+        this.chunkSize = chunkSize;
+    }
+
+    public SessionImportReportDto importSessions(List<SessionDto> rows) {
+        if (rows.size() > maxRows) {
+            throw new BadRequestException("At most " + maxRows + " sessions per import");
+        }
+
+        List<List<String>> errors = new ArrayList<>(rows.size());
+        List<Session> sessions = this.resolve(rows, errors);
+
+        SessionImportReportDto.Row[] results = new SessionImportReportDto.Row[rows.size()];
+        if (errors.stream().anyMatch(rowErrors -> !rowErrors.isEmpty())) {
+            for (int i = 0; i < rows.size(); i++) {
+                results[i] = new SessionImportReportDto.Row(i, errors.get(i).isEmpty()
+                        ? SessionImportReportDto.Status.SKIPPED
+                        : SessionImportReportDto.Status.INVALID, null, errors.get(i));
+            }
+            this.meterRegistry.counter("sessions.import.rows", "outcome", "invalid").increment(rows.size());
+            return report(results);
+        }
+
+        int chunks = (sessions.size() + chunkSize - 1) / chunkSize;
+        int imported = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int from = chunk * chunkSize;
+            List<Session> batch = sessions.subList(from, Math.min(from + chunkSize, sessions.size()));
+
+            try {
+                this.transactionTemplate.executeWithoutResult(status -> {
+                    this.sessionRepository.insertAll(batch);
+                    batch.forEach(session -> {
+                        this.auditLog.record(SessionAuditLog.CREATED, session.getId());
+                        this.eventPublisher.publishEvent(
+                                new SessionChangedEvent(SessionChangedEvent.Type.CREATED, session.getId(), null));
+                    });
+                });
+                for (int i = 0; i < batch.size(); i++) {
+                    results[from + i] = new SessionImportReportDto.Row(from + i,
+                            SessionImportReportDto.Status.IMPORTED, batch.get(i).getId(), null);
+                }
+                imported += batch.size();
+                this.meterRegistry.counter("sessions.import.rows", "outcome", "imported").increment(batch.size());
+            } catch (DataAccessException e) {
+                logger.warn("Session import chunk {}/{} rolled back", chunk + 1, chunks, e);
+                for (int i = 0; i < batch.size(); i++) {
+                    results[from + i] = new SessionImportReportDto.Row(from + i, SessionImportReportDto.Status.FAILED,
+                            null, Collections.singletonList("Chunk rolled back: " + e.getMostSpecificCause().getMessage()));
+                }
+                this.meterRegistry.counter("sessions.import.rows", "outcome", "failed").increment(batch.size());
+            }
+
+            logger.info("Session import chunk {}/{} done, {}/{} sessions imported", chunk + 1, chunks, imported, sessions.size());
+        }
+
+        return report(results);
+    }
+
+    /**
+     * Reads sessions from CSV with a header line naming {@code name}, {@code date},
+     * {@code description}, {@code teacher_id} and optionally {@code capacity} and {@code users},
+     * in any order. Other columns are ignored, so a session export can be fed back in. Dates are
+     * ISO-8601 instants and {@code users} holds participant ids separated by spaces or semicolons.
+     */
+    public List<SessionDto> readCsv(Reader reader) throws IOException {
+        CsvRowReader csv = new CsvRowReader(reader);
+        String[] header = csv.read();
+        if (header == null) {
+            return Collections.emptyList();
+        }
+
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            columns.put(header[i].trim().toLowerCase(), i);
+        }
+        if (!columns.keySet().containsAll(Arrays.asList("name", "date", "description", "teacher_id"))) {
+            throw new BadRequestException("CSV header must name at least name, date, description and teacher_id");
+        }
+
+        List<SessionDto> rows = new ArrayList<>();
+        int line = csv.getLine();
+        for (String[] record = csv.read(); record != null; line = csv.getLine(), record = csv.read()) {
+            if (record.length == 1 && record[0].trim().isEmpty()) {
+                continue;
+            }
+            if (rows.size() >= maxRows) {
+                throw new BadRequestException("At most " + maxRows + " sessions per import");
+            }
+
+            try {
+                SessionDto row = new SessionDto();
+                row.setName(cell(record, columns, "name"));
+                row.setDescription(cell(record, columns, "description"));
+                String date = cell(record, columns, "date");
+                row.setDate(date != null ? Date.from(Instant.parse(date)) : null);
+                String teacherId = cell(record, columns, "teacher_id");
+                row.setTeacher_id(teacherId != null ? Long.valueOf(teacherId) : null);
+                String capacity = cell(record, columns, "capacity");
+                row.setCapacity(capacity != null ? Integer.valueOf(capacity) : null);
+                String users = cell(record, columns, "users");
+                row.setUsers(users != null
+                        ? Arrays.stream(users.split("[;\\s]+")).filter(id -> !id.isEmpty()).map(Long::valueOf).collect(Collectors.toList())
+                        : new ArrayList<>());
+                rows.add(row);
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new BadRequestException("Line " + line + ": " + e.getMessage());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Validates every row and builds its entity, recording the problems of row {@code i} in
+     * {@code errors.get(i)}.
+     */
+    private List<Session> resolve(List<SessionDto> rows, List<List<String>> errors) {
+        Set<Long> teacherIds = new LinkedHashSet<>();
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (SessionDto row : rows) {
+            if (row.getTeacher_id() != null) {
+                teacherIds.add(row.getTeacher_id());
+            }
+            if (row.getUsers() != null) {
+                userIds.addAll(row.getUsers());
+            }
+        }
+
+        Map<Long, Teacher> teachers = this.teacherRepository.findAllById(teacherIds).stream()
+                .collect(Collectors.toMap(Teacher::getId, Function.identity()));
+        Map<Long, User> users = this.findUsers(new ArrayList<>(userIds));
+
+        List<Session> sessions = new ArrayList<>(rows.size());
+        for (SessionDto row : rows) {
+            List<String> rowErrors = new ArrayList<>();
+            for (ConstraintViolation<SessionDto> violation : this.validator.validate(row)) {
+                rowErrors.add(violation.getPropertyPath() + " " + violation.getMessage());
+            }
+            Collections.sort(rowErrors);
+
+            Teacher teacher = row.getTeacher_id() != null ? teachers.get(row.getTeacher_id()) : null;
+            if (row.getTeacher_id() != null && teacher == null) {
+                rowErrors.add("Unknown teacher id: " + row.getTeacher_id());
+            }
+
+            Set<Long> participantIds = row.getUsers() != null ? new LinkedHashSet<>(row.getUsers()) : Collections.emptySet();
+            List<Long> unknownIds = participantIds.stream()
+                    .filter(id -> !users.containsKey(id))
+                    .collect(Collectors.toList());
+            if (!unknownIds.isEmpty()) {
+                rowErrors.add("Unknown user ids: " + unknownIds);
+            }
+            if (row.getCapacity() != null && participantIds.size() > row.getCapacity()) {
+                rowErrors.add("Participants exceed session capacity");
+            }
+
+            errors.add(rowErrors);
+            sessions.add(new Session()
+                    .setName(row.getName())
+                    .setDescription(row.getDescription())
+                    .setDate(row.getDate())
+                    .setCapacity(row.getCapacity())
+                    .setTeacher(teacher)
+                    .setUsers(participantIds.stream().map(users::get).collect(Collectors.toList())));
+        }
+        return sessions;
+    }
+
+    private Map<Long, User> findUsers(List<Long> ids) {
+        Map<Long, User> users = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += LOOKUP_BATCH_SIZE) {
+            for (User user : this.userRepository.findAllById(ids.subList(from, Math.min(from + LOOKUP_BATCH_SIZE, ids.size())))) {
+                users.put(user.getId(), user);
+            }
+        }
+        return users;
+    }
+
+    private static String cell(String[] record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.length || record[index].isEmpty()) {
+            return null;
+        }
+        return record[index].trim();
+    }
+
+    private static SessionImportReportDto report(SessionImportReportDto.Row[] results) {
+        List<SessionImportReportDto.Row> rows = Arrays.asList(results);
+        int imported = (int) rows.stream().filter(row -> row.getStatus() == SessionImportReportDto.Status.IMPORTED).count();
+        return new SessionImportReportDto(rows.size(), imported, rows.size() - imported, rows);
+    }
+}
@@ -1,78 +1,536 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.ParticipationBatchDto;
+import com.openclassrooms.starterjwt.dto.ParticipationBatchResultDto;
+import com.openclassrooms.starterjwt.dto.ParticipationBatchResultDto.Outcome;
+import com.openclassrooms.starterjwt.events.SessionChangedEvent;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.logging.SessionAuditLog;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class SessionService {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public static final int MAX_BATCH_SIZE = 1000;
+
     private final SessionRepository sessionRepository;
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final WaitlistRepository waitlistRepository;
+
+    private final MeterRegistry meterRegistry;
+
+    private final SessionAuditLog auditLog;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public SessionService(SessionRepository sessionRepository,
+                          UserRepository userRepository,
+                          WaitlistRepository waitlistRepository,
+                          MeterRegistry meterRegistry,
+                          SessionAuditLog auditLog,
+                          ApplicationEventPublisher eventPublisher) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.waitlistRepository = waitlistRepository;
+        this.meterRegistry = meterRegistry;
+        this.auditLog = auditLog;
+        this.eventPublisher = eventPublisher;
     }
 
+    @Transactional
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        checkCapacity(session);
+
+        Session created = this.sessionRepository.save(session);
+        this.sessionRepository.syncSeatsTaken(created.getId());
+        this.auditLog.record(SessionAuditLog.CREATED, created.getId());
+        this.publish(SessionChangedEvent.Type.CREATED, created.getId(), null);
+        return created;
     }
 
+    @Transactional
     public void delete(Long id) {
+        this.waitlistRepository.deleteBySession(id);
         this.sessionRepository.deleteById(id);
+        this.auditLog.record(SessionAuditLog.DELETED, id);
+        this.publish(SessionChangedEvent.Type.DELETED, id, null);
     }
 
     public List<Session> findAll() {
         return this.sessionRepository.findAll();
     }
 
+    public Slice<Session> findPage(SessionCursor after, Date from, Date to, Long teacherId, Integer size) {
+        SessionCursor.expect(after, false);
+        return this.sessionRepository.findPage(
+                teacherId,
+                from,
+                to,
+                after != null ? after.getDate() : null,
+                after != null ? after.getId() : null,
+                PageRequest.of(0, pageSize(size)));
+    }
+
+    private static int pageSize(Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize < 1) {
+            throw new BadRequestException();
+        }
+        return Math.min(pageSize, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Pages through the sessions a user has joined: upcoming ones soonest first, or past ones most
+     * recent first. Without a cursor the listing starts from now; a cursor issued for the other
+     * direction is rejected.
+     */
+    public Slice<Session> findJoined(Long userId, boolean past, SessionCursor after, Integer size) {
+        SessionCursor.expect(after, past);
+        PageRequest page = PageRequest.of(0, pageSize(size));
+        Date date = after != null ? after.getDate() : new Date();
+
+        if (past) {
+            return this.sessionRepository.findJoinedBefore(userId, date, after != null ? after.getId() : 0L, page);
+        }
+        return this.sessionRepository.findJoinedAfter(userId, date, after != null ? after.getId() : 0L, page);
+    }
+
+    public List<Long> findParticipantIds(Long sessionId) {
+        return this.findParticipantIds(Collections.singletonList(sessionId))
+                .getOrDefault(sessionId, Collections.emptyList());
+    }
+
+    public Map<Long, List<Long>> findParticipantIds(Collection<Long> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        return this.sessionRepository.findParticipants(sessionIds).stream()
+                .collect(Collectors.groupingBy(
+                        SessionRepository.Participant::getSessionId,
+                        Collectors.mapping(SessionRepository.Participant::getUserId, Collectors.toList())));
+    }
+
+    public Map<Long, Long> countParticipants(Collection<Long> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        return this.sessionRepository.countParticipants(sessionIds).stream()
+                .collect(Collectors.toMap(
+                        SessionRepository.ParticipantCount::getSessionId,
+                        SessionRepository.ParticipantCount::getParticipants));
+    }
+
     public Session getById(Long id) {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Reads the revision and timestamp of a session without loading it.
+     */
+    public SessionRepository.Version getVersion(Long id) {
+        return this.sessionRepository.findVersion(id).orElse(null);
+    }
+
+    @Transactional
     public Session update(Long id, Session session) {
+        checkCapacity(session);
+
+        // Loading the row first costs nothing extra: merge would read it into the context anyway
+        List<String> changedFields = changedFields(this.sessionRepository.findById(id).orElse(null), session);
+
         session.setId(id);
-        return this.sessionRepository.save(session);
+        Session updated = this.sessionRepository.save(session);
+        this.sessionRepository.syncSeatsTaken(id);
+
+        // Users enrolled through the roster leave the queue, and seats the edit freed go to it
+        List<Long> enrolled = session.getUsers() == null
+                ? Collections.emptyList()
+                : session.getUsers().stream().map(User::getId).filter(Objects::nonNull).collect(Collectors.toList());
+        if (!enrolled.isEmpty()) {
+            this.waitlistRepository.deleteEntries(id, enrolled);
+        }
+        if (this.waitlistRepository.existsBySessionId(id)) {
+            while (this.sessionRepository.reserveSeat(id) > 0) {
+                if (!this.promoteFromWaitlist(id)) {
+                    this.sessionRepository.releaseSeat(id);
+                    break;
+                }
+            }
+        }
+
+        this.auditLog.record(SessionAuditLog.UPDATED, id, null, changedFields);
+        this.publish(SessionChangedEvent.Type.UPDATED, id, null);
+        return updated;
     }
 
-    public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
+    /**
+     * Joins the session, or queues the user on its waitlist when every seat is taken.
+     */
+    @Transactional
+    public ParticipationStatus participate(Long id, Long userId) {
+        if (!this.sessionRepository.existsById(id) || !this.userRepository.existsById(userId)) {
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
+        if (this.sessionRepository.countParticipant(id, userId) > 0
+                || this.waitlistRepository.existsBySessionIdAndUserId(id, userId)) {
             throw new BadRequestException();
         }
 
-        session.getUsers().add(user);
+        try {
+            if (this.sessionRepository.reserveSeat(id) > 0) {
+                this.sessionRepository.addParticipant(id, userId);
+                this.sessionRepository.evictRoster(id);
+                return this.recordJoin(id, userId, ParticipationStatus.PARTICIPATING);
+            }
 
-        this.sessionRepository.save(session);
+            WaitlistEntry entry = this.waitlistRepository.save(
+                    WaitlistEntry.builder().sessionId(id).userId(userId).build());
+
+            // A seat released while we were queuing goes to the head of the waitlist, not to us.
+            if (this.sessionRepository.reserveSeat(id) > 0 && !this.promoteFromWaitlist(id)) {
+                this.sessionRepository.releaseSeat(id);
+            }
+
+            return this.recordJoin(id, userId, this.waitlistRepository.existsById(entry.getId())
+                    ? ParticipationStatus.WAITLISTED
+                    : ParticipationStatus.PARTICIPATING);
+        } catch (DataIntegrityViolationException e) {
+            throw new BadRequestException();
+        }
     }
 
+    /**
+     * Leaves the session or its waitlist. A freed seat is handed to the head of the waitlist
+     * in the same transaction, so the seat counter only drops when nobody is waiting.
+     */
+    @Transactional
     public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
+        if (this.sessionRepository.removeParticipant(id, userId) > 0) {
+            this.sessionRepository.evictRoster(id);
+            if (!this.promoteFromWaitlist(id)) {
+                this.sessionRepository.releaseSeat(id);
+            }
+            this.recordLeave(id, userId, "roster");
+            return;
+        }
+
+        if (this.waitlistRepository.deleteEntry(id, userId) > 0) {
+            this.recordLeave(id, userId, "waitlist");
+            return;
+        }
+
+        if (!this.sessionRepository.existsById(id)) {
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
-            throw new BadRequestException();
+        throw new BadRequestException();
+    }
+
+    /**
+     * Applies many roster changes in one transaction. Removals run first, so a group can be moved
+     * from one session to another in a single request. Each session then takes one multi-row
+     * statement per direction, and its capacity is checked once, when the seats for all its
+     * newcomers are reserved in one conditional update. Pairs that are already in the wanted
+     * state are skipped. Newcomers beyond the free seats are reported, not waitlisted.
+     */
+    @Transactional
+    public List<ParticipationBatchResultDto.Result> changeParticipants(List<ParticipationBatchDto.Pair> removals,
+                                                                       List<ParticipationBatchDto.Pair> additions) {
+        if (removals.size() + additions.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("At most " + MAX_BATCH_SIZE + " changes per request");
+        }
+        if (removals.isEmpty() && additions.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<Long> sessionIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (ParticipationBatchDto.Pair pair : concat(removals, additions)) {
+            sessionIds.add(pair.getSessionId());
+            userIds.add(pair.getUserId());
         }
+        Set<Long> knownSessions = this.sessionRepository.findSeats(sessionIds).stream()
+                .map(SessionRepository.Seats::getId)
+                .collect(Collectors.toSet());
+        Set<Long> knownUsers = new HashSet<>(this.userRepository.findExistingIds(userIds));
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+        List<ParticipationBatchResultDto.Result> results = new ArrayList<>();
+        results.addAll(this.applyBySession(removals, knownSessions, knownUsers,
+                Outcome.NOT_PARTICIPATING, this::removeParticipants));
+        results.addAll(this.applyBySession(additions, knownSessions, knownUsers,
+                Outcome.ALREADY_PARTICIPATING, this::addParticipants));
+        return results;
+    }
 
-        this.sessionRepository.save(session);
+    private List<ParticipationBatchResultDto.Result> applyBySession(List<ParticipationBatchDto.Pair> pairs,
+                                                                    Set<Long> knownSessions,
+                                                                    Set<Long> knownUsers,
+                                                                    Outcome repeated,
+                                                                    BatchChange change) {
+        Map<Long, Set<Long>> usersBySession = new LinkedHashMap<>();
+        for (ParticipationBatchDto.Pair pair : pairs) {
+            if (knownSessions.contains(pair.getSessionId()) && knownUsers.contains(pair.getUserId())) {
+                usersBySession.computeIfAbsent(pair.getSessionId(), id -> new LinkedHashSet<>()).add(pair.getUserId());
+            }
+        }
+
+        Map<Long, Map<Long, Outcome>> outcomes = new HashMap<>();
+        usersBySession.forEach((sessionId, users) -> outcomes.put(sessionId, change.apply(sessionId, new ArrayList<>(users))));
+
+        // A pair listed twice only takes effect once
+        Set<List<Long>> seen = new HashSet<>();
+        return pairs.stream()
+                .map(pair -> {
+                    Outcome outcome;
+                    if (!knownSessions.contains(pair.getSessionId())) {
+                        outcome = Outcome.UNKNOWN_SESSION;
+                    } else if (!knownUsers.contains(pair.getUserId())) {
+                        outcome = Outcome.UNKNOWN_USER;
+                    } else if (!seen.add(Arrays.asList(pair.getSessionId(), pair.getUserId()))) {
+                        outcome = repeated;
+                    } else {
+                        outcome = outcomes.get(pair.getSessionId()).get(pair.getUserId());
+                    }
+                    return new ParticipationBatchResultDto.Result(pair.getSessionId(), pair.getUserId(), outcome);
+                })
+                .collect(Collectors.toList());
+    }
+
+    private Map<Long, Outcome> removeParticipants(Long sessionId, List<Long> userIds) {
+        Set<Long> onRoster = new HashSet<>(this.sessionRepository.findParticipantsAmong(sessionId, userIds));
+        List<Long> others = userIds.stream().filter(id -> !onRoster.contains(id)).collect(Collectors.toList());
+        Set<Long> onWaitlist = others.isEmpty()
+                ? Collections.emptySet()
+                : new HashSet<>(this.waitlistRepository.findUsersAmong(sessionId, others));
+
+        // Dropped from the waitlist first, so none of them is promoted into a freed seat
+        if (!onWaitlist.isEmpty()) {
+            this.waitlistRepository.deleteEntries(sessionId, onWaitlist);
+        }
+        if (!onRoster.isEmpty()) {
+            int removed = this.sessionRepository.removeParticipants(sessionId, onRoster);
+            this.sessionRepository.evictRoster(sessionId);
+
+            int promoted = 0;
+            while (promoted < removed && this.promoteFromWaitlist(sessionId)) {
+                promoted++;
+            }
+            if (removed > promoted) {
+                this.sessionRepository.releaseSeats(sessionId, removed - promoted);
+            }
+        }
+
+        Map<Long, Outcome> outcomes = new HashMap<>();
+        for (Long userId : userIds) {
+            if (onRoster.contains(userId)) {
+                this.recordLeave(sessionId, userId, "roster");
+                outcomes.put(userId, Outcome.REMOVED);
+            } else if (onWaitlist.contains(userId)) {
+                this.recordLeave(sessionId, userId, "waitlist");
+                outcomes.put(userId, Outcome.REMOVED_FROM_WAITLIST);
+            } else {
+                outcomes.put(userId, Outcome.NOT_PARTICIPATING);
+            }
+        }
+        return outcomes;
+    }
+
+    private Map<Long, Outcome> addParticipants(Long sessionId, List<Long> userIds) {
+        Set<Long> already = new HashSet<>(this.sessionRepository.findParticipantsAmong(sessionId, userIds));
+        List<Long> newcomers = userIds.stream().filter(id -> !already.contains(id)).collect(Collectors.toList());
+        List<Long> enrolled = newcomers.subList(0, this.reserveSeats(sessionId, newcomers.size()));
+
+        if (!enrolled.isEmpty()) {
+            try {
+                int added = this.sessionRepository.addParticipants(sessionId, enrolled);
+                // Users who joined on their own meanwhile already hold a seat
+                if (added < enrolled.size()) {
+                    this.sessionRepository.releaseSeats(sessionId, enrolled.size() - added);
+                }
+            } catch (DataIntegrityViolationException e) {
+                throw new BadRequestException();
+            }
+            this.sessionRepository.evictRoster(sessionId);
+            this.waitlistRepository.deleteEntries(sessionId, enrolled);
+        }
+
+        Set<Long> enrolledIds = new HashSet<>(enrolled);
+        Map<Long, Outcome> outcomes = new HashMap<>();
+        for (Long userId : userIds) {
+            if (already.contains(userId)) {
+                outcomes.put(userId, Outcome.ALREADY_PARTICIPATING);
+            } else if (enrolledIds.contains(userId)) {
+                this.recordJoin(sessionId, userId, ParticipationStatus.PARTICIPATING);
+                outcomes.put(userId, Outcome.ENROLLED);
+            } else {
+                outcomes.put(userId, Outcome.SESSION_FULL);
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Takes up to {@code wanted} seats in one conditional update, retrying with a fresh count
+     * when a concurrent join or leave moved the counter in between.
+     *
+     * @return the number of seats taken
+     */
+    private int reserveSeats(Long sessionId, int wanted) {
+        while (wanted > 0) {
+            List<SessionRepository.Seats> seats = this.sessionRepository.findSeats(Collections.singleton(sessionId));
+            if (seats.isEmpty()) {
+                return 0;
+            }
+
+            Integer capacity = seats.get(0).getCapacity();
+            int granted = capacity == null ? wanted : Math.min(wanted, capacity - seats.get(0).getSeatsTaken());
+            if (granted <= 0) {
+                return 0;
+            }
+            if (this.sessionRepository.reserveSeats(sessionId, granted) > 0) {
+                return granted;
+            }
+        }
+        return 0;
+    }
+
+    private static <T> List<T> concat(List<T> first, List<T> second) {
+        List<T> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+
+    @FunctionalInterface
+    private interface BatchChange {
+        Map<Long, Outcome> apply(Long sessionId, List<Long> userIds);
+    }
+
+    /**
+     * Moves the oldest waitlist entry into the roster. Only that entry's row is locked, so
+     * concurrent cancellations queue on the waitlist head rather than on the session row.
+     */
+    private boolean promoteFromWaitlist(Long id) {
+        while (true) {
+            Optional<WaitlistEntry> head = this.waitlistRepository.findFirstBySessionIdOrderByIdAsc(id);
+            if (!head.isPresent()) {
+                return false;
+            }
+
+            if (this.waitlistRepository.deleteEntry(head.get().getId()) > 0) {
+                this.sessionRepository.addParticipant(id, head.get().getUserId());
+                this.sessionRepository.evictRoster(id);
+                this.sessionRepository.touch(id);
+                this.meterRegistry.counter("sessions.waitlist.promotions").increment();
+                this.auditLog.record(SessionAuditLog.JOINED, id, head.get().getUserId());
+                this.publish(SessionChangedEvent.Type.JOINED, id, head.get().getUserId());
+                return true;
+            }
+        }
+    }
+
+    private ParticipationStatus recordJoin(Long id, Long userId, ParticipationStatus status) {
+        this.meterRegistry.counter("sessions.participation.joins", "status", status.name().toLowerCase()).increment();
+        this.auditLog.record(status == ParticipationStatus.WAITLISTED ? SessionAuditLog.WAITLISTED : SessionAuditLog.JOINED,
+                id, userId);
+        this.publish(status == ParticipationStatus.WAITLISTED ? SessionChangedEvent.Type.WAITLISTED : SessionChangedEvent.Type.JOINED,
+                id, userId);
+        return status;
+    }
+
+    private void recordLeave(Long id, Long userId, String from) {
+        this.meterRegistry.counter("sessions.participation.leaves", "from", from).increment();
+        this.auditLog.record(SessionAuditLog.LEFT, id, userId);
+        this.publish(SessionChangedEvent.Type.LEFT, id, userId);
+    }
+
+    private void publish(SessionChangedEvent.Type type, Long id, Long userId) {
+        this.eventPublisher.publishEvent(new SessionChangedEvent(type, id, userId));
+    }
+
+    /**
+     * Names the columns an update is about to change. Only names are returned so that the
+     * audit log never sees the values themselves.
+     */
+    static List<String> changedFields(Session before, Session after) {
+        List<String> fields = new ArrayList<>();
+        if (before == null) {
+            return fields;
+        }
+
+        if (!Objects.equals(before.getName(), after.getName())) {
+            fields.add("name");
+        }
+        if (!sameInstant(before.getDate(), after.getDate())) {
+            fields.add("date");
+        }
+        if (!Objects.equals(before.getDescription(), after.getDescription())) {
+            fields.add("description");
+        }
+        if (!Objects.equals(before.getCapacity(), after.getCapacity())) {
+            fields.add("capacity");
+        }
+        if (!Objects.equals(before.getTeacher() != null ? before.getTeacher().getId() : null,
+                after.getTeacher() != null ? after.getTeacher().getId() : null)) {
+            fields.add("teacher");
+        }
+        if (!userIds(before.getUsers()).equals(userIds(after.getUsers()))) {
+            fields.add("users");
+        }
+        return fields;
+    }
+
+    // A loaded Timestamp never equals() the Date it was written from
+    private static boolean sameInstant(Date a, Date b) {
+        return a == null ? b == null : b != null && a.getTime() == b.getTime();
+    }
+
+    private static Set<Long> userIds(List<User> users) {
+        return users == null
+                ? Collections.emptySet()
+                : users.stream().map(User::getId).collect(Collectors.toSet());
+    }
+
+    private void checkCapacity(Session session) {
+        if (session.getCapacity() != null && session.getUsers() != null
+                && session.getUsers().size() > session.getCapacity()) {
+            throw new BadRequestException("Participants exceed session capacity");
+        }
     }
 }
@@ -6,6 +6,13 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 
+/**
+ * Teachers are reference data: reads are served from Hibernate's {@code teacher} region and
+ * query cache, which hand every persistence context its own instances. Updates and deletes
+ * evict the teacher through {@link com.openclassrooms.starterjwt.cache.TeacherCacheInvalidator}.
+ * Hits and misses are published as {@code hibernate.second.level.cache.requests} with
+ * {@code region=teacher}.
+ */
 @Service
 public class TeacherService {
     private final TeacherRepository teacherRepository;
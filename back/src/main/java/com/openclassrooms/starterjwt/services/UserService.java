@@ -1,22 +1,50 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.events.UserDeletedEvent;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 
 @Service
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final WaitlistRepository waitlistRepository;
+
+    private final UserDetailsCache userDetailsCache;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public UserService(UserRepository userRepository,
+                       WaitlistRepository waitlistRepository,
+                       UserDetailsCache userDetailsCache,
+                       ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
+        this.waitlistRepository = waitlistRepository;
+        this.userDetailsCache = userDetailsCache;
+        this.eventPublisher = eventPublisher;
     }
 
+    @Transactional
     public void delete(Long id) {
+        this.waitlistRepository.deleteByUser(id);
         this.userRepository.deleteById(id);
+        this.userDetailsCache.evict(id);
+        this.eventPublisher.publishEvent(new UserDeletedEvent(id));
     }
 
     public User findById(Long id) {
         return this.userRepository.findById(id).orElse(null);
     }
+
+    public List<User> findAllById(Collection<Long> ids) {
+        return this.userRepository.findAllById(ids);
+    }
 }
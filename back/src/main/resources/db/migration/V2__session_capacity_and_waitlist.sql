@@ -0,0 +1,47 @@
+-- Capacity, the denormalized seat counter and the row revision used for ETags.
+ALTER TABLE `SESSIONS` ADD COLUMN `capacity` INT;
+ALTER TABLE `SESSIONS` ADD COLUMN `seats_taken` INT NOT NULL DEFAULT 0;
+ALTER TABLE `SESSIONS` ADD COLUMN `revision` BIGINT NOT NULL DEFAULT 0;
+
+-- Databases adopted from the old script may hold half-empty or repeated participations: the
+-- former are dropped and each repeated pair is kept once.
+DELETE FROM `PARTICIPATE` WHERE `user_id` IS NULL OR `session_id` IS NULL;
+
+CREATE TABLE `PARTICIPATE_REPEATED` (
+  `user_id` INT NOT NULL,
+  `session_id` INT NOT NULL
+);
+INSERT INTO `PARTICIPATE_REPEATED` (`user_id`, `session_id`)
+  SELECT `user_id`, `session_id` FROM `PARTICIPATE` GROUP BY `user_id`, `session_id` HAVING COUNT(*) > 1;
+DELETE FROM `PARTICIPATE` WHERE EXISTS (
+  SELECT 1 FROM `PARTICIPATE_REPEATED` r
+  WHERE r.`user_id` = `PARTICIPATE`.`user_id` AND r.`session_id` = `PARTICIPATE`.`session_id`
+);
+INSERT INTO `PARTICIPATE` (`user_id`, `session_id`) SELECT `user_id`, `session_id` FROM `PARTICIPATE_REPEATED`;
+DROP TABLE `PARTICIPATE_REPEATED`;
+
+-- A user joins a session at most once; the key also serves every lookup by session.
+ALTER TABLE `PARTICIPATE` MODIFY `user_id` INT NOT NULL;
+ALTER TABLE `PARTICIPATE` MODIFY `session_id` INT NOT NULL;
+ALTER TABLE `PARTICIPATE` ADD PRIMARY KEY (`session_id`, `user_id`);
+
+UPDATE `SESSIONS` SET `seats_taken` = (
+  SELECT COUNT(*) FROM `PARTICIPATE` WHERE `PARTICIPATE`.`session_id` = `SESSIONS`.`id`
+);
+
+-- Login looks users up by email. Repeated emails cannot be resolved here: DuplicateEmailCheck
+-- stops the migration first and names them.
+ALTER TABLE `USERS` ADD CONSTRAINT `UK_USERS_EMAIL` UNIQUE (`email`);
+
+CREATE TABLE `WAITLIST` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT `UK_WAITLIST_SESSION_USER` UNIQUE (`session_id`, `user_id`)
+);
+
+CREATE INDEX `IDX_WAITLIST_SESSION` ON `WAITLIST` (`session_id`, `id`);
+
+ALTER TABLE `WAITLIST` ADD CONSTRAINT `WAITLIST_ibfk_1` FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
+ALTER TABLE `WAITLIST` ADD CONSTRAINT `WAITLIST_ibfk_2` FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
@@ -0,0 +1,33 @@
+-- Keys are widened to BIGINT to match the Long ids of the entity model, which startup now
+-- validates. Both sides of a foreign key must share a type, so the keys are dropped first.
+ALTER TABLE `SESSIONS` DROP FOREIGN KEY `SESSIONS_ibfk_1`;
+ALTER TABLE `PARTICIPATE` DROP FOREIGN KEY `PARTICIPATE_ibfk_1`;
+ALTER TABLE `PARTICIPATE` DROP FOREIGN KEY `PARTICIPATE_ibfk_2`;
+ALTER TABLE `WAITLIST` DROP FOREIGN KEY `WAITLIST_ibfk_1`;
+ALTER TABLE `WAITLIST` DROP FOREIGN KEY `WAITLIST_ibfk_2`;
+
+ALTER TABLE `TEACHERS` MODIFY `id` BIGINT AUTO_INCREMENT;
+ALTER TABLE `USERS` MODIFY `id` BIGINT AUTO_INCREMENT;
+ALTER TABLE `SESSIONS` MODIFY `id` BIGINT AUTO_INCREMENT;
+ALTER TABLE `SESSIONS` MODIFY `teacher_id` BIGINT;
+ALTER TABLE `PARTICIPATE` MODIFY `user_id` BIGINT NOT NULL;
+ALTER TABLE `PARTICIPATE` MODIFY `session_id` BIGINT NOT NULL;
+ALTER TABLE `WAITLIST` MODIFY `id` BIGINT AUTO_INCREMENT;
+ALTER TABLE `WAITLIST` MODIFY `session_id` BIGINT NOT NULL;
+ALTER TABLE `WAITLIST` MODIFY `user_id` BIGINT NOT NULL;
+
+-- The entity accepts descriptions up to 2500 characters.
+ALTER TABLE `SESSIONS` MODIFY `description` VARCHAR(2500);
+
+-- Session lists are paged by (date, id), optionally for a single teacher.
+CREATE INDEX `IDX_SESSIONS_DATE` ON `SESSIONS` (`date`, `id`);
+CREATE INDEX `IDX_SESSIONS_TEACHER_DATE` ON `SESSIONS` (`teacher_id`, `date`, `id`);
+
+-- Participations of a user; lookups by session use the primary key.
+CREATE INDEX `IDX_PARTICIPATE_USER` ON `PARTICIPATE` (`user_id`, `session_id`);
+
+ALTER TABLE `SESSIONS` ADD CONSTRAINT `FK_SESSIONS_TEACHER` FOREIGN KEY (`teacher_id`) REFERENCES `TEACHERS` (`id`);
+ALTER TABLE `PARTICIPATE` ADD CONSTRAINT `FK_PARTICIPATE_USER` FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
+ALTER TABLE `PARTICIPATE` ADD CONSTRAINT `FK_PARTICIPATE_SESSION` FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
+ALTER TABLE `WAITLIST` ADD CONSTRAINT `FK_WAITLIST_USER` FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
+ALTER TABLE `WAITLIST` ADD CONSTRAINT `FK_WAITLIST_SESSION` FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
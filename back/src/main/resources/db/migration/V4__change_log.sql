@@ -0,0 +1,17 @@
+-- Transactional outbox read by GET /api/changes. Rows are never updated, and carry no foreign
+-- keys so that the changes of deleted sessions and users stay readable.
+CREATE TABLE `CHANGE_LOG` (
+  `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+  `entity` VARCHAR(20) NOT NULL,
+  `entity_id` BIGINT NOT NULL,
+  `action` VARCHAR(40) NOT NULL,
+  `user_id` BIGINT,
+  `changed_at` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Writers lock this single row from their insert until their commit, so CHANGE_LOG ids are
+-- handed out in commit order and a reader paging by id never skips a late commit.
+CREATE TABLE `CHANGE_LOG_LOCK` (
+  `id` TINYINT PRIMARY KEY
+);
+INSERT INTO `CHANGE_LOG_LOCK` (`id`) VALUES (1);
@@ -0,0 +1,3 @@
+-- CHANGE_LOG ids are no longer handed out under a lock; readers wait for changes to settle
+-- instead, so writers to different sessions no longer queue behind each other at commit.
+DROP TABLE `CHANGE_LOG_LOCK`;
@@ -0,0 +1,160 @@
+package com.openclassrooms.starterjwt.cache;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.SessionService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that second-level and query cache entries are dropped by every write path of
+ * {@link SessionService}, including the native seat and roster statements.
+ */
+@SpringBootTest
+class SecondLevelCacheTest {
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+
+    private Long sessionId;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        Teacher teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("Delahaye"));
+        userId = userRepository.save(new User(UUID.randomUUID() + "@yoga.test", "Last", "First", "hash", false)).getId();
+        sessionId = sessionService.create(new Session()
+                .setName("Yoga")
+                .setDescription("Morning class")
+                .setDate(new Date())
+                .setCapacity(10)
+                .setTeacher(teacher)
+                .setUsers(new ArrayList<>())).getId();
+
+        entityManagerFactory.getCache().evictAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getById_shouldBeServedFromSecondLevelCache() {
+        sessionService.getById(sessionId);
+        statistics.clear();
+
+        assertEquals("Yoga", sessionService.getById(sessionId).getName());
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getDomainDataRegionStatistics("session").getHitCount());
+    }
+
+    @Test
+    void update_shouldRefreshCachedSession() {
+        long revision = sessionService.getById(sessionId).getRevision();
+
+        sessionService.update(sessionId, new Session()
+                .setName("Renamed")
+                .setDescription("Evening class")
+                .setDate(new Date())
+                .setCapacity(10)
+                .setUsers(new ArrayList<>(Collections.singletonList(userRepository.findById(userId).get()))));
+
+        Session updated = sessionService.getById(sessionId);
+        assertEquals("Renamed", updated.getName());
+        assertTrue(updated.getRevision() > revision);
+        assertEquals(1, updated.getSeatsTaken());
+        assertEquals(Collections.singletonList(userId), roster());
+    }
+
+    @Test
+    void participate_shouldEvictRosterAndSeatCounter() {
+        assertEquals(Collections.emptyList(), roster());
+        assertEquals(0, sessionService.getById(sessionId).getSeatsTaken());
+
+        sessionService.participate(sessionId, userId);
+
+        assertEquals(Collections.singletonList(userId), roster());
+        assertEquals(1, sessionService.getById(sessionId).getSeatsTaken());
+
+        sessionService.noLongerParticipate(sessionId, userId);
+
+        assertEquals(Collections.emptyList(), roster());
+        assertEquals(0, sessionService.getById(sessionId).getSeatsTaken());
+    }
+
+    @Test
+    void participate_shouldLeaveUnrelatedRegionsCached() {
+        userRepository.findById(userId);
+
+        sessionService.participate(sessionId, userId);
+        statistics.clear();
+
+        assertTrue(userRepository.findById(userId).isPresent());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void delete_shouldEvictSession() {
+        assertNotNull(sessionService.getById(sessionId));
+
+        sessionService.delete(sessionId);
+
+        assertNull(sessionService.getById(sessionId));
+    }
+
+    @Test
+    void findAll_shouldUseQueryCache_untilASessionChanges() {
+        sessionService.findAll();
+        statistics.clear();
+
+        sessionService.findAll();
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getQueryCacheHitCount());
+
+        sessionService.participate(sessionId, userId);
+
+        Session listed = sessionService.findAll().stream()
+                .filter(session -> session.getId().equals(sessionId))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+        assertEquals(1, listed.getSeatsTaken());
+    }
+
+    private List<Long> roster() {
+        return transactionTemplate.execute(status -> sessionService.getById(sessionId).getUsers().stream()
+                .map(User::getId)
+                .collect(Collectors.toList()));
+    }
+}
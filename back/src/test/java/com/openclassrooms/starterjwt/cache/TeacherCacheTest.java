@@ -0,0 +1,117 @@
+package com.openclassrooms.starterjwt.cache;
+
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class TeacherCacheTest {
+
+    @Autowired
+    private TeacherService teacherService;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+
+    private Teacher teacher;
+
+    @BeforeEach
+    void setUp() {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAllRegions();
+        statistics = sessionFactory.getStatistics();
+        teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("Delahaye"));
+    }
+
+    @Test
+    void findById_shouldBeServedFromCache_asAnInstancePerCaller() {
+        Teacher first = teacherService.findById(teacher.getId());
+        statistics.clear();
+
+        Teacher second = teacherService.findById(teacher.getId());
+        first.setFirstName("Changed by the first caller");
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertNotSame(first, second);
+        assertEquals("Margot", second.getFirstName());
+        assertEquals("Margot", teacherService.findById(teacher.getId()).getFirstName());
+    }
+
+    @Test
+    void findAll_shouldBeServedFromQueryCache() {
+        teacherService.findAll();
+        statistics.clear();
+
+        assertTrue(teacherService.findAll().contains(teacher));
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void update_shouldBeVisible_afterCommit() {
+        teacherService.findAll();
+        assertEquals("Margot", teacherService.findById(teacher.getId()).getFirstName());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Teacher managed = teacherRepository.findById(teacher.getId()).orElseThrow(IllegalStateException::new);
+            managed.setFirstName("Hélène");
+        });
+
+        assertFalse(entityManagerFactory.getCache().contains(Teacher.class, teacher.getId()));
+        assertEquals("Hélène", teacherService.findById(teacher.getId()).getFirstName());
+        assertTrue(teacherService.findAll().stream()
+                .anyMatch(found -> found.getId().equals(teacher.getId()) && found.getFirstName().equals("Hélène")));
+    }
+
+    @Test
+    void delete_shouldEvictTeacher() {
+        assertNotNull(teacherService.findById(teacher.getId()));
+
+        teacherRepository.deleteById(teacher.getId());
+
+        assertFalse(entityManagerFactory.getCache().contains(Teacher.class, teacher.getId()));
+        assertNull(teacherService.findById(teacher.getId()));
+    }
+
+    @Test
+    void regionHitsAndMisses_shouldBePublished() {
+        entityManagerFactory.getCache().evict(Teacher.class, teacher.getId());
+        double hits = requests("hit");
+        double misses = requests("miss");
+
+        teacherService.findById(teacher.getId());
+        teacherService.findById(teacher.getId());
+
+        assertEquals(misses + 1, requests("miss"));
+        assertEquals(hits + 1, requests("hit"));
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("hibernate.second.level.cache.requests")
+                .tags("region", "teacher", "result", result)
+                .functionCounter()
+                .count();
+    }
+}
@@ -0,0 +1,101 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the admin-only endpoints behind the security filters.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class AdminAuthorizationTest {
+    private static final String EMPTY_BATCH = "{\"remove\":[],\"add\":[]}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM WAITLIST");
+        jdbcTemplate.update("DELETE FROM PARTICIPATE");
+        jdbcTemplate.update("DELETE FROM USERS");
+        jdbcTemplate.update("INSERT INTO USERS (email, first_name, last_name, password, admin)"
+                + " VALUES ('admin@yoga.test', 'Ada', 'A', 'hash', true), ('user@yoga.test', 'Bob', 'B', 'hash', false)");
+    }
+
+    @Test
+    void export_shouldReturn401_withoutToken() throws Exception {
+        mockMvc.perform(get("/api/export/sessions"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void export_shouldReturn403_forNonAdmin() throws Exception {
+        mockMvc.perform(get("/api/export/sessions").header(HttpHeaders.AUTHORIZATION, bearer("user@yoga.test")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/export/attendance").header(HttpHeaders.AUTHORIZATION, bearer("user@yoga.test")))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void export_shouldReturn200_forAdmin() throws Exception {
+        mockMvc.perform(get("/api/export/sessions").header(HttpHeaders.AUTHORIZATION, bearer("admin@yoga.test")))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/export/attendance").header(HttpHeaders.AUTHORIZATION, bearer("admin@yoga.test")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void changeParticipants_shouldReturn403_forNonAdmin() throws Exception {
+        mockMvc.perform(post("/api/session/participations").header(HttpHeaders.AUTHORIZATION, bearer("user@yoga.test"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(EMPTY_BATCH))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void changeParticipants_shouldReturn200_forAdmin() throws Exception {
+        mockMvc.perform(post("/api/session/participations").header(HttpHeaders.AUTHORIZATION, bearer("admin@yoga.test"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(EMPTY_BATCH))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void changes_shouldReturn403_forNonAdmin() throws Exception {
+        mockMvc.perform(get("/api/changes").header(HttpHeaders.AUTHORIZATION, bearer("user@yoga.test")))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void changes_shouldReturn200_forAdmin() throws Exception {
+        mockMvc.perform(get("/api/changes").header(HttpHeaders.AUTHORIZATION, bearer("admin@yoga.test")))
+                .andExpect(status().isOk());
+    }
+
+    private String bearer(String email) {
+        UserDetailsImpl principal = UserDetailsImpl.builder().username(email).build();
+        return "Bearer " + jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+}
@@ -4,25 +4,34 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.PasswordHashingExecutor;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
 
-import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -37,7 +46,7 @@ class AuthControllerTest {
     private ObjectMapper objectMapper;
 
     @MockBean
-    private AuthenticationManager authenticationManager;
+    private UserDetailsServiceImpl userDetailsService;
 
     @MockBean
     private JwtUtils jwtUtils;
@@ -48,33 +57,32 @@ class AuthControllerTest {
     @MockBean
     private UserRepository userRepository;
 
+    @SpyBean
+    private PasswordHashingExecutor passwordHashingExecutor;
+
     @Test
     void login_shouldReturn200_andAdminFalse_whenUserNotAdmin() throws Exception {
         LoginRequest req = new LoginRequest();
         req.setEmail("john@doe.com");
         req.setPassword("test1234");
 
-        // Principal attendu par le controller
-        UserDetailsImpl principal = mock(UserDetailsImpl.class);
-        when(principal.getId()).thenReturn(1L);
-        when(principal.getUsername()).thenReturn("john@doe.com");
-        when(principal.getFirstName()).thenReturn("John");
-        when(principal.getLastName()).thenReturn("Doe");
-
-        Authentication auth = mock(Authentication.class);
-        when(auth.getPrincipal()).thenReturn(principal);
-        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenReturn(auth);
-
-        when(jwtUtils.generateJwtToken(auth)).thenReturn("fake-jwt");
-
-        User dbUser = new User();
-        dbUser.setAdmin(false);
-        dbUser.setEmail("john@doe.com");
-        when(userRepository.findByEmail("john@doe.com")).thenReturn(Optional.of(dbUser));
-
-        mockMvc.perform(post("/api/auth/login")
+        AtomicReference<String> lookupThread = new AtomicReference<>();
+        AtomicReference<String> compareThread = new AtomicReference<>();
+        when(userDetailsService.loadUserByUsername("john@doe.com")).thenAnswer(invocation -> {
+            lookupThread.set(Thread.currentThread().getName());
+            return principal(1L, "john@doe.com", "John", "Doe", false);
+        });
+        when(passwordEncoder.matches("test1234", "encoded")).thenAnswer(invocation -> {
+            compareThread.set(Thread.currentThread().getName());
+            return true;
+        });
+        when(jwtUtils.generateJwtToken(any(Authentication.class))).thenReturn("fake-jwt");
+
+        mockMvc.perform(asyncDispatch(mockMvc.perform(post("/api/auth/login")
                 .contentType(APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(req)))
+                .andExpect(request().asyncStarted())
+                .andReturn()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.token").value("fake-jwt"))
                 .andExpect(jsonPath("$.id").value(1))
@@ -82,6 +90,9 @@ class AuthControllerTest {
                 .andExpect(jsonPath("$.firstName").value("John"))
                 .andExpect(jsonPath("$.lastName").value("Doe"))
                 .andExpect(jsonPath("$.admin").value(false));
+
+        assertFalse(lookupThread.get().startsWith("password-hash-"), lookupThread.get());
+        assertTrue(compareThread.get().startsWith("password-hash-"), compareThread.get());
     }
 
     @Test
@@ -90,30 +101,46 @@ class AuthControllerTest {
         req.setEmail("admin@test.com");
         req.setPassword("test1234");
 
-        UserDetailsImpl principal = mock(UserDetailsImpl.class);
-        when(principal.getId()).thenReturn(2L);
-        when(principal.getUsername()).thenReturn("admin@test.com");
-        when(principal.getFirstName()).thenReturn("Admin");
-        when(principal.getLastName()).thenReturn("User");
-
-        Authentication auth = mock(Authentication.class);
-        when(auth.getPrincipal()).thenReturn(principal);
-        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class))).thenReturn(auth);
+        when(userDetailsService.loadUserByUsername("admin@test.com"))
+                .thenReturn(principal(2L, "admin@test.com", "Admin", "User", true));
+        when(passwordEncoder.matches("test1234", "encoded")).thenReturn(true);
+        when(jwtUtils.generateJwtToken(any(Authentication.class))).thenReturn("fake-jwt");
 
-        when(jwtUtils.generateJwtToken(auth)).thenReturn("fake-jwt");
-
-        User dbUser = new User();
-        dbUser.setAdmin(true);
-        dbUser.setEmail("admin@test.com");
-        when(userRepository.findByEmail("admin@test.com")).thenReturn(Optional.of(dbUser));
-
-        mockMvc.perform(post("/api/auth/login")
+        mockMvc.perform(asyncDispatch(mockMvc.perform(post("/api/auth/login")
                 .contentType(APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(req)))
+                .andExpect(request().asyncStarted())
+                .andReturn()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.admin").value(true));
     }
 
+    @Test
+    void login_shouldFail_withBadCredentials_whenPasswordWrongOrEmailUnknown() throws Exception {
+        when(userDetailsService.loadUserByUsername("john@doe.com"))
+                .thenReturn(principal(1L, "john@doe.com", "John", "Doe", false));
+        when(userDetailsService.loadUserByUsername("nobody@doe.com"))
+                .thenThrow(new UsernameNotFoundException("nobody@doe.com"));
+        when(passwordEncoder.encode(any())).thenReturn("dummy");
+
+        for (String email : new String[]{"john@doe.com", "nobody@doe.com"}) {
+            LoginRequest req = new LoginRequest();
+            req.setEmail(email);
+            req.setPassword("wrong");
+
+            Object result = mockMvc.perform(post("/api/auth/login")
+                    .contentType(APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(req)))
+                    .andExpect(request().asyncStarted())
+                    .andReturn().getAsyncResult();
+
+            assertTrue(result instanceof BadCredentialsException, email);
+        }
+        verify(passwordEncoder).matches("wrong", "encoded");
+        verify(passwordEncoder).matches("wrong", "dummy");
+        verify(jwtUtils, never()).generateJwtToken(any());
+    }
+
     @Test
     void register_shouldReturn400_whenEmailAlreadyTaken() throws Exception {
         SignupRequest req = new SignupRequest();
@@ -122,15 +149,18 @@ class AuthControllerTest {
         req.setLastName("Doe");
         req.setPassword("test1234");
 
-        when(userRepository.existsByEmail("john@doe.com")).thenReturn(true);
+        when(passwordEncoder.encode("test1234")).thenReturn("encoded");
+        when(userRepository.save(any(User.class))).thenThrow(new DataIntegrityViolationException("duplicate email"));
 
-        mockMvc.perform(post("/api/auth/register")
+        mockMvc.perform(asyncDispatch(mockMvc.perform(post("/api/auth/register")
                 .contentType(APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(req)))
+                .andExpect(request().asyncStarted())
+                .andReturn()))
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.message").value("Error: Email is already taken!"));
 
-        verify(userRepository, never()).save(any(User.class));
+        verify(userRepository, never()).existsByEmail(any());
     }
 
     @Test
@@ -141,15 +171,50 @@ class AuthControllerTest {
         req.setLastName("User");
         req.setPassword("test1234");
 
-        when(userRepository.existsByEmail("new@doe.com")).thenReturn(false);
         when(passwordEncoder.encode("test1234")).thenReturn("encoded");
+        AtomicReference<String> insertThread = new AtomicReference<>();
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
+            insertThread.set(Thread.currentThread().getName());
+            return invocation.getArgument(0);
+        });
 
-        mockMvc.perform(post("/api/auth/register")
+        mockMvc.perform(asyncDispatch(mockMvc.perform(post("/api/auth/register")
                 .contentType(APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(req)))
+                .andExpect(request().asyncStarted())
+                .andReturn()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.message").value("User registered successfully!"));
 
         verify(userRepository).save(any(User.class));
+        assertFalse(insertThread.get().startsWith("password-hash-"), insertThread.get());
+    }
+
+    @Test
+    void login_shouldReturn503_whenHashingPoolSaturated() throws Exception {
+        LoginRequest req = new LoginRequest();
+        req.setEmail("john@doe.com");
+        req.setPassword("test1234");
+
+        doThrow(new ServiceUnavailableException()).when(passwordHashingExecutor)
+                .submit(eq(PasswordHashingExecutor.LOGIN), any());
+
+        mockMvc.perform(post("/api/auth/login")
+                .contentType(APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(req)))
+                .andExpect(status().isServiceUnavailable());
+
+        verify(passwordEncoder, never()).matches(any(), any());
+    }
+
+    private static UserDetailsImpl principal(Long id, String email, String firstName, String lastName, boolean admin) {
+        return UserDetailsImpl.builder()
+                .id(id)
+                .username(email)
+                .firstName(firstName)
+                .lastName(lastName)
+                .admin(admin)
+                .password("encoded")
+                .build();
     }
 }
@@ -0,0 +1,66 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.dto.ChangeDto;
+import com.openclassrooms.starterjwt.dto.ChangePageDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.services.ChangeFeedService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+class ChangeControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ChangeFeedService changeFeedService;
+
+    @Test
+    void findSince_shouldReturn200_withTheNextCursor() throws Exception {
+        ChangeDto change = new ChangeDto(8L, "session", 3L, "session.joined", 5L, Instant.parse("2030-01-01T09:00:00Z"));
+        when(changeFeedService.findSince("7", null))
+                .thenReturn(new ChangePageDto(Collections.singletonList(change), "8", false));
+
+        mockMvc.perform(get("/api/changes").param("since", "7"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-store"))
+                .andExpect(jsonPath("$.items[0].id").value(8))
+                .andExpect(jsonPath("$.items[0].action").value("session.joined"))
+                .andExpect(jsonPath("$.items[0].userId").value(5))
+                .andExpect(jsonPath("$.items[0].changedAt").value("2030-01-01T09:00:00Z"))
+                .andExpect(jsonPath("$.nextCursor").value("8"))
+                .andExpect(jsonPath("$.hasMore").value(false));
+    }
+
+    @Test
+    void findSince_shouldReturn400_whenTheCursorIsInvalid() throws Exception {
+        when(changeFeedService.findSince("abc", null)).thenThrow(new BadRequestException("Invalid cursor"));
+
+        mockMvc.perform(get("/api/changes").param("since", "abc"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void findSince_shouldStartFromTheBeginning_withoutACursor() throws Exception {
+        when(changeFeedService.findSince(isNull(), isNull()))
+                .thenReturn(new ChangePageDto(Collections.emptyList(), "0", false));
+
+        mockMvc.perform(get("/api/changes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextCursor").value("0"));
+    }
+}
@@ -0,0 +1,227 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.export.RowWriter;
+import com.openclassrooms.starterjwt.services.ExportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+class ExportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private List<Long> sessionIds;
+
+    private List<Long> userIds;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM WAITLIST");
+        jdbcTemplate.update("DELETE FROM PARTICIPATE");
+        jdbcTemplate.update("DELETE FROM SESSIONS");
+        jdbcTemplate.update("DELETE FROM USERS");
+
+        jdbcTemplate.update("INSERT INTO TEACHERS (first_name, last_name) VALUES ('Margot', 'Delahaye')");
+        Long teacherId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM TEACHERS", Long.class);
+        jdbcTemplate.update("INSERT INTO USERS (email, first_name, last_name, password, admin)"
+                + " VALUES ('a@yoga.test', 'Ann', 'A', 'hash', false), ('b@yoga.test', 'Bob', 'B', 'hash', false)");
+        userIds = jdbcTemplate.queryForList("SELECT id FROM USERS ORDER BY id", Long.class);
+
+        Timestamp date = Timestamp.valueOf("2030-01-01 09:00:00");
+        jdbcTemplate.update("INSERT INTO SESSIONS (name, description, date, teacher_id, seats_taken)"
+                + " VALUES ('Yoga', 'Morning, \"slow\"', ?, ?, 2), ('=Stretch', 'Evening', ?, NULL, 1)",
+                date, teacherId, date);
+        sessionIds = jdbcTemplate.queryForList("SELECT id FROM SESSIONS ORDER BY id", Long.class);
+
+        jdbcTemplate.update("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?), (?, ?), (?, ?)",
+                sessionIds.get(0), userIds.get(0), sessionIds.get(0), userIds.get(1), sessionIds.get(1), userIds.get(1));
+    }
+
+    @Test
+    void exportSessions_shouldStreamOneJsonObjectPerLine() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/export/sessions"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-ndjson"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"sessions.ndjson\""))
+                .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(sessionIds.get(0).longValue(), first.get("id").asLong());
+        assertEquals("Yoga", first.get("name").asText());
+        assertEquals(2, first.get("participant_count").asInt());
+        assertTrue(first.get("capacity").isNull());
+        assertEquals(Timestamp.valueOf("2030-01-01 09:00:00").toInstant().toString(), first.get("date").asText());
+    }
+
+    @Test
+    void exportSessions_shouldResumeAfterLastSeenId() throws Exception {
+        String body = mockMvc.perform(get("/api/export/sessions").param("afterId", sessionIds.get(0).toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String[] lines = body.split("\n");
+        assertEquals(1, lines.length);
+        assertEquals(sessionIds.get(1).longValue(), objectMapper.readTree(lines[0]).get("id").asLong());
+    }
+
+    @Test
+    void exportSessions_shouldWriteEscapedCsv() throws Exception {
+        String body = mockMvc.perform(get("/api/export/sessions").param("format", "csv"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "text/csv;charset=UTF-8"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String[] lines = body.split("\r\n");
+        assertEquals("id,name,date,description,teacher_id,capacity,participant_count", lines[0]);
+        assertTrue(lines[1].startsWith(sessionIds.get(0) + ",Yoga,"));
+        assertTrue(lines[1].contains(",\"Morning, \"\"slow\"\"\","));
+        assertTrue(lines[2].startsWith(sessionIds.get(1) + ",'=Stretch,"));
+    }
+
+    @Test
+    void exportSessions_shouldOmitCsvHeader_whenResuming() throws Exception {
+        String body = mockMvc.perform(get("/api/export/sessions").param("format", "csv").param("afterId", "0"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        assertTrue(body.startsWith(sessionIds.get(0) + ","));
+    }
+
+    @Test
+    void exportAttendance_shouldJoinUsersAndTeachers_andResumeAfterLastSeenPair() throws Exception {
+        String body = mockMvc.perform(get("/api/export/attendance")
+                        .param("afterSessionId", sessionIds.get(0).toString())
+                        .param("afterUserId", userIds.get(0).toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(sessionIds.get(0).longValue(), first.get("session_id").asLong());
+        assertEquals("b@yoga.test", first.get("user_email").asText());
+        assertEquals("Margot", first.get("teacher_first_name").asText());
+
+        JsonNode second = objectMapper.readTree(lines[1]);
+        assertEquals(sessionIds.get(1).longValue(), second.get("session_id").asLong());
+        assertTrue(second.get("teacher_id").isNull());
+    }
+
+    @Test
+    void exportAttendance_shouldGzip_whenAccepted() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/export/attendance").param("format", "csv")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn();
+
+        String body = gunzip(result.getResponse().getContentAsByteArray());
+        assertEquals(4, body.split("\r\n").length);
+        assertTrue(body.startsWith("session_id,session_name,"));
+    }
+
+    @Test
+    void export_shouldReturn400_forUnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/export/sessions").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void export_shouldResetResponse_whenFailingBeforeAnythingWasSent() throws Exception {
+        ExportService exportService = mock(ExportService.class);
+        doAnswer(invocation -> {
+            invocation.getArgument(1, RowWriter.class).write(new Object[]{1L, "Yoga", null, null, null, null, 0});
+            throw new IllegalStateException("connection lost");
+        }).when(exportService).exportSessions(anyLong(), any(RowWriter.class));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThrows(IllegalStateException.class, () -> new ExportController(exportService, objectMapper)
+                .exportSessions("ndjson", null, null, response));
+
+        assertFalse(response.isCommitted());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void export_shouldLeaveGzipUnterminated_whenFailingAfterRowsWereSent() throws Exception {
+        ExportService exportService = mock(ExportService.class);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        doAnswer(invocation -> {
+            RowWriter writer = invocation.getArgument(2, RowWriter.class);
+            writer.write(new Object[]{1L, 1L, "Yoga", null, null, null, null, null, null, null});
+            response.flushBuffer();
+            throw new IllegalStateException("connection lost");
+        }).when(exportService).exportAttendance(anyLong(), anyLong(), any(RowWriter.class));
+
+        assertThrows(IllegalStateException.class, () -> new ExportController(exportService, objectMapper)
+                .exportAttendance("csv", null, null, "gzip", response));
+
+        assertTrue(response.isCommitted());
+        assertThrows(EOFException.class, () -> gunzip(response.getContentAsByteArray()));
+    }
+
+    @Test
+    void acceptsGzip_shouldHonourQualityZero() {
+        for (String header : Arrays.asList("gzip", "deflate, GZIP", "br;q=1.0, gzip;q=0.5")) {
+            assertTrue(ExportController.acceptsGzip(header), header);
+        }
+        for (String header : Arrays.asList(null, "", "deflate", "gzip;q=0", "gzip; q=0.000")) {
+            assertFalse(ExportController.acceptsGzip(header), String.valueOf(header));
+        }
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
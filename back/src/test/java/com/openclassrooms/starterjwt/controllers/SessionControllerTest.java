@@ -1,24 +1,37 @@
 package com.openclassrooms.starterjwt.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.ParticipationBatchResultDto;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionImportReportDto;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.services.ParticipationStatus;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionImportService;
 import com.openclassrooms.starterjwt.services.SessionService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -45,6 +58,9 @@ class SessionControllerTest {
     @MockBean
     private SessionMapper sessionMapper;
 
+    @MockBean
+    private SessionImportService sessionImportService;
+
     @Test
     void findById_shouldReturn200_whenFound() throws Exception {
         Session session = new Session();
@@ -54,7 +70,8 @@ class SessionControllerTest {
         dto.setId(1L);
 
         when(sessionService.getById(1L)).thenReturn(session);
-        when(sessionMapper.toDto(session)).thenReturn(dto);
+        when(sessionService.findParticipantIds(1L)).thenReturn(Arrays.asList(10L, 11L));
+        when(sessionMapper.toDto(session, Arrays.asList(10L, 11L))).thenReturn(dto);
 
         mockMvc.perform(get("/api/session/1"))
                 .andExpect(status().isOk())
@@ -62,6 +79,83 @@ class SessionControllerTest {
                 .andExpect(jsonPath("$.id").value(1));
     }
 
+    @Test
+    void findById_shouldSendEtagAndLastModified() throws Exception {
+        Session session = new Session().setId(1L).setRevision(3L).setUpdatedAt(java.time.LocalDateTime.of(2024, 1, 2, 3, 4, 5));
+
+        when(sessionService.getById(1L)).thenReturn(session);
+        when(sessionService.findParticipantIds(1L)).thenReturn(Collections.emptyList());
+        when(sessionMapper.toDto(session, Collections.emptyList())).thenReturn(new SessionDto());
+
+        mockMvc.perform(get("/api/session/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-3\""))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"));
+    }
+
+    @Test
+    void findById_shouldReturn304FromProbe_withoutLoadingSession() throws Exception {
+        SessionRepository.Version version = mock(SessionRepository.Version.class);
+        when(version.getId()).thenReturn(1L);
+        when(version.getRevision()).thenReturn(3L);
+        when(sessionService.getVersion(1L)).thenReturn(version);
+
+        mockMvc.perform(get("/api/session/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(sessionService, never()).getById(any());
+        verifyNoInteractions(sessionMapper);
+    }
+
+    @Test
+    void findById_shouldReturn200_whenRevisionChanged() throws Exception {
+        SessionRepository.Version version = mock(SessionRepository.Version.class);
+        when(version.getId()).thenReturn(1L);
+        when(version.getRevision()).thenReturn(4L);
+        when(sessionService.getVersion(1L)).thenReturn(version);
+        Session session = new Session().setId(1L).setRevision(4L);
+        when(sessionService.getById(1L)).thenReturn(session);
+        when(sessionService.findParticipantIds(1L)).thenReturn(Collections.emptyList());
+        when(sessionMapper.toDto(session, Collections.emptyList())).thenReturn(new SessionDto());
+
+        mockMvc.perform(get("/api/session/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-4\""));
+    }
+
+    @Test
+    void findById_shouldReturn404FromProbe_whenConditionalAndNotFound() throws Exception {
+        when(sessionService.getVersion(1L)).thenReturn(null);
+
+        mockMvc.perform(get("/api/session/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-3\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void findAll_shouldReturn304_withoutLoadingParticipantsOrMapping() throws Exception {
+        Session s1 = new Session().setId(1L).setRevision(2L).setDate(new Date(1000L));
+        when(sessionService.findPage(isNull(), isNull(), isNull(), isNull(), isNull()))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(s1), PageRequest.of(0, 20), false));
+        when(sessionService.findParticipantIds(anyList())).thenReturn(Collections.emptyMap());
+        when(sessionMapper.toDto(anyList(), anyMap())).thenReturn(Collections.singletonList(new SessionDto()));
+
+        String etag = mockMvc.perform(get("/api/session"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        clearInvocations(sessionService, sessionMapper);
+
+        mockMvc.perform(get("/api/session").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        verify(sessionService, never()).findParticipantIds(anyList());
+        verifyNoInteractions(sessionMapper);
+
+        s1.setRevision(3L);
+        mockMvc.perform(get("/api/session").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void findById_shouldReturn404_whenNotFound() throws Exception {
         when(sessionService.getById(1L)).thenReturn(null);
@@ -89,9 +183,10 @@ class SessionControllerTest {
         d2.setId(2L);
 
         when(sessionService.findAll()).thenReturn(Arrays.asList(s1, s2));
-        when(sessionMapper.toDto(Arrays.asList(s1, s2))).thenReturn(Arrays.asList(d1, d2));
+        when(sessionService.findParticipantIds(Arrays.asList(1L, 2L))).thenReturn(Collections.emptyMap());
+        when(sessionMapper.toDto(Arrays.asList(s1, s2), Collections.emptyMap())).thenReturn(Arrays.asList(d1, d2));
 
-        mockMvc.perform(get("/api/session"))
+        mockMvc.perform(get("/api/session").param("unpaged", "true"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.length()").value(2))
@@ -99,6 +194,79 @@ class SessionControllerTest {
                 .andExpect(jsonPath("$[1].id").value(2));
     }
 
+    @Test
+    void findAll_shouldReturnPageWithNextCursor_whenMoreResults() throws Exception {
+        Session s1 = new Session();
+        s1.setId(1L);
+        s1.setDate(new Date(1000L));
+        Session s2 = new Session();
+        s2.setId(2L);
+        s2.setDate(new Date(2000L));
+
+        SessionDto d1 = new SessionDto();
+        d1.setId(1L);
+        SessionDto d2 = new SessionDto();
+        d2.setId(2L);
+
+        when(sessionService.findPage(isNull(), isNull(), isNull(), eq(5L), eq(2)))
+                .thenReturn(new SliceImpl<>(Arrays.asList(s1, s2), PageRequest.of(0, 2), true));
+        when(sessionService.findParticipantIds(Arrays.asList(1L, 2L))).thenReturn(Collections.emptyMap());
+        when(sessionMapper.toDto(Arrays.asList(s1, s2), Collections.emptyMap())).thenReturn(Arrays.asList(d1, d2));
+
+        mockMvc.perform(get("/api/session").param("size", "2").param("teacherId", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[1].id").value(2))
+                .andExpect(jsonPath("$.nextCursor").value(SessionCursor.of(s2).encode()));
+    }
+
+    @Test
+    void findAll_shouldReturnLastPageWithoutCursor() throws Exception {
+        when(sessionService.findPage(any(SessionCursor.class), isNull(), isNull(), isNull(), isNull()))
+                .thenReturn(new SliceImpl<>(Collections.emptyList(), PageRequest.of(0, 20), false));
+        when(sessionService.findParticipantIds(anyList())).thenReturn(Collections.emptyMap());
+        when(sessionMapper.toDto(anyList(), anyMap())).thenReturn(Collections.emptyList());
+
+        mockMvc.perform(get("/api/session").param("cursor", new SessionCursor(new Date(1000L), 1L).encode()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(0))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void findAll_shouldReturnParticipantCounts_whenRequested() throws Exception {
+        Session s1 = new Session();
+        s1.setId(1L);
+        s1.setDate(new Date(1000L));
+
+        SessionDto d1 = new SessionDto();
+        d1.setId(1L);
+        d1.setParticipantCount(3L);
+
+        when(sessionService.findPage(isNull(), isNull(), isNull(), isNull(), isNull()))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(s1), PageRequest.of(0, 20), false));
+        when(sessionService.countParticipants(Collections.singletonList(1L))).thenReturn(Collections.singletonMap(1L, 3L));
+        when(sessionMapper.toDtoWithCounts(Collections.singletonList(s1), Collections.singletonMap(1L, 3L)))
+                .thenReturn(Collections.singletonList(d1));
+
+        mockMvc.perform(get("/api/session").param("participants", "count"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].participantCount").value(3))
+                .andExpect(jsonPath("$.items[0].users").doesNotExist());
+    }
+
+    @Test
+    void findAll_shouldReturn400_whenParticipantsModeUnknown() throws Exception {
+        mockMvc.perform(get("/api/session").param("participants", "full"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void findAll_shouldReturn400_whenCursorInvalid() throws Exception {
+        mockMvc.perform(get("/api/session").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void create_shouldReturn200() throws Exception {
         // request dto -> entity -> saved -> response dto
@@ -209,6 +377,15 @@ class SessionControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void participate_shouldReturn202_whenWaitlisted() throws Exception {
+        when(sessionService.participate(1L, 10L)).thenReturn(ParticipationStatus.WAITLISTED);
+
+        mockMvc.perform(post("/api/session/1/participate/10"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.message").value("Session is full, added to the waitlist"));
+    }
+
     @Test
     void participate_shouldReturn400_whenIdsNotNumeric() throws Exception {
         mockMvc.perform(post("/api/session/abc/participate/10"))
@@ -232,4 +409,83 @@ class SessionControllerTest {
         mockMvc.perform(delete("/api/session/1/participate/xyz"))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void importSessions_shouldReturn200_withPerRowResults() throws Exception {
+        SessionImportReportDto report = new SessionImportReportDto(1, 1, 0, Collections.singletonList(
+                new SessionImportReportDto.Row(0, SessionImportReportDto.Status.IMPORTED, 42L, null)));
+        when(sessionImportService.importSessions(anyList())).thenReturn(report);
+
+        SessionDto dto = new SessionDto();
+        dto.setName("Yoga");
+
+        mockMvc.perform(post("/api/session/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Collections.singletonList(dto))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rows[0].status").value("IMPORTED"))
+                .andExpect(jsonPath("$.rows[0].id").value(42))
+                .andExpect(jsonPath("$.rows[0].errors").doesNotExist());
+
+        verify(sessionImportService).importSessions(argThat(rows -> rows.size() == 1 && "Yoga".equals(rows.get(0).getName())));
+    }
+
+    @Test
+    void importSessions_shouldReturn400_whenARowIsInvalid() throws Exception {
+        SessionImportReportDto report = new SessionImportReportDto(1, 0, 1, Collections.singletonList(
+                new SessionImportReportDto.Row(0, SessionImportReportDto.Status.INVALID, null,
+                        Collections.singletonList("Unknown teacher id: 9"))));
+        when(sessionImportService.importSessions(anyList())).thenReturn(report);
+
+        mockMvc.perform(post("/api/session/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.rows[0].errors[0]").value("Unknown teacher id: 9"));
+    }
+
+    @Test
+    void importSessions_shouldReadCsvBodies() throws Exception {
+        SessionDto dto = new SessionDto();
+        SessionImportReportDto report = new SessionImportReportDto(0, 0, 0, Collections.emptyList());
+        when(sessionImportService.readCsv(any())).thenReturn(Collections.singletonList(dto));
+        when(sessionImportService.importSessions(Collections.singletonList(dto))).thenReturn(report);
+
+        mockMvc.perform(post("/api/session/import")
+                        .contentType("text/csv")
+                        .content("name,date,description,teacher_id\n"))
+                .andExpect(status().isOk());
+
+        verify(sessionImportService).readCsv(any());
+    }
+
+    @Test
+    void changeParticipants_shouldReturn200_withPerPairOutcomes() throws Exception {
+        when(sessionService.changeParticipants(anyList(), anyList())).thenReturn(Arrays.asList(
+                new ParticipationBatchResultDto.Result(1L, 10L, ParticipationBatchResultDto.Outcome.REMOVED),
+                new ParticipationBatchResultDto.Result(2L, 10L, ParticipationBatchResultDto.Outcome.SESSION_FULL)));
+
+        mockMvc.perform(post("/api/session/participations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"remove\":[{\"sessionId\":1,\"userId\":10}],\"add\":[{\"sessionId\":2,\"userId\":10}]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].outcome").value("REMOVED"))
+                .andExpect(jsonPath("$.results[1].sessionId").value(2))
+                .andExpect(jsonPath("$.results[1].outcome").value("SESSION_FULL"));
+
+        verify(sessionService).changeParticipants(
+                argThat(pairs -> pairs.size() == 1 && pairs.get(0).getSessionId() == 1L),
+                argThat(pairs -> pairs.size() == 1 && pairs.get(0).getSessionId() == 2L));
+    }
+
+    @Test
+    void changeParticipants_shouldReturn400_whenAPairIsIncomplete() throws Exception {
+        mockMvc.perform(post("/api/session/participations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"add\":[{\"sessionId\":2}]}"))
+                .andExpect(status().isBadRequest());
+
+        verify(sessionService, never()).changeParticipants(anyList(), anyList());
+    }
 }
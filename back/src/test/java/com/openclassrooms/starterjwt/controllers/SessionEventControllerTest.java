@@ -0,0 +1,134 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.events.SessionEventBroadcaster;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.SessionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Subscribes to the real event stream and drives the service, so events only show up once the
+ * changes are committed.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+class SessionEventControllerTest {
+    private static final Pattern EVENT = Pattern.compile("id:(\\S+)\nevent:(\\S+)\ndata:(.*)\n");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void subscribe_shouldPushCommittedChanges_withSeatCounts() throws Exception {
+        MockHttpServletResponse stream = subscribe(null);
+
+        Long sessionId = createSession();
+        Long userId = userRepository.save(new User(UUID.randomUUID() + "@yoga.test", "Last", "First", "hash", false)).getId();
+        sessionService.participate(sessionId, userId);
+        sessionService.delete(sessionId);
+
+        List<String[]> events = awaitEvents(stream, sessionId, 3);
+        assertEquals(MediaType.TEXT_EVENT_STREAM_VALUE, stream.getContentType());
+        assertEquals("no-cache", stream.getHeader("Cache-Control"));
+        assertEquals("session.created", events.get(0)[1]);
+        assertEquals("{\"sessionId\":" + sessionId + ",\"capacity\":10,\"seatsTaken\":0}", events.get(0)[2]);
+        assertEquals("session.seats", events.get(1)[1]);
+        assertEquals("{\"sessionId\":" + sessionId + ",\"capacity\":10,\"seatsTaken\":1}", events.get(1)[2]);
+        assertEquals("session.deleted", events.get(2)[1]);
+        assertEquals("{\"sessionId\":" + sessionId + "}", events.get(2)[2]);
+        assertFalse(stream.getContentAsString().contains("userId"));
+    }
+
+    @Test
+    void subscribe_shouldReplayMissedEvents_afterLastEventId() throws Exception {
+        MockHttpServletResponse first = subscribe(null);
+        Long sessionId = createSession();
+        String lastEventId = awaitEvents(first, sessionId, 1).get(0)[0];
+
+        sessionService.delete(sessionId);
+        awaitEvents(first, sessionId, 2);
+
+        MockHttpServletResponse resumed = subscribe(lastEventId);
+        List<String[]> replayed = awaitEvents(resumed, sessionId, 1);
+        assertEquals("session.deleted", replayed.get(0)[1]);
+        assertFalse(resumed.getContentAsString().contains("session.created"));
+    }
+
+    @Test
+    void subscribe_shouldAskForAReload_whenTheLastEventIdIsUnknown() throws Exception {
+        MockHttpServletResponse stream = subscribe("0-42");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!stream.getContentAsString().contains("event:" + SessionEventBroadcaster.RESET)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(stream.getContentAsString().startsWith("event:" + SessionEventBroadcaster.RESET + "\n"),
+                stream.getContentAsString());
+    }
+
+    private MockHttpServletResponse subscribe(String lastEventId) throws Exception {
+        MvcResult result = mockMvc.perform(lastEventId == null
+                        ? get("/api/session/events")
+                        : get("/api/session/events").header("Last-Event-ID", lastEventId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return result.getResponse();
+    }
+
+    private Long createSession() {
+        Session session = new Session();
+        session.setName("Live");
+        session.setDescription("Class");
+        session.setDate(new Date());
+        session.setCapacity(10);
+        return sessionService.create(session).getId();
+    }
+
+    /**
+     * Waits for at least {@code count} events about the session, other tests' sessions aside.
+     */
+    private static List<String[]> awaitEvents(MockHttpServletResponse stream, Long sessionId, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            List<String[]> events = new ArrayList<>();
+            Matcher matcher = EVENT.matcher(stream.getContentAsString());
+            while (matcher.find()) {
+                if (matcher.group(3).startsWith("{\"sessionId\":" + sessionId + ",")
+                        || matcher.group(3).equals("{\"sessionId\":" + sessionId + "}")) {
+                    events.add(new String[]{matcher.group(1), matcher.group(2), matcher.group(3)});
+                }
+            }
+            if (events.size() >= count || System.currentTimeMillis() > deadline) {
+                assertEquals(count, events.size(), stream.getContentAsString());
+                return events;
+            }
+            Thread.sleep(20);
+        }
+    }
+}
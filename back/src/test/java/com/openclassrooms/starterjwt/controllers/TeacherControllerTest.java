@@ -8,14 +8,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import com.openclassrooms.starterjwt.dto.TeacherDto;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.List;
 
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -49,6 +52,21 @@ class TeacherControllerTest {
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
     }
 
+    @Test
+    void findById_shouldReturn304_withoutMapping() throws Exception {
+        LocalDateTime updatedAt = LocalDateTime.of(2024, 1, 2, 3, 4, 5);
+        long millis = updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Teacher teacher = new Teacher().setId(1L).setUpdatedAt(updatedAt);
+        when(teacherService.findById(1L)).thenReturn(teacher);
+
+        mockMvc.perform(get("/api/teacher/1").header(HttpHeaders.IF_NONE_MATCH, "\"1-" + millis + "\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/teacher/1").header(HttpHeaders.IF_MODIFIED_SINCE, millis))
+                .andExpect(status().isNotModified());
+
+        verifyNoInteractions(teacherMapper);
+    }
+
     @Test
     void findById_shouldReturn404_whenNotFound() throws Exception {
         when(teacherService.findById(1L)).thenReturn(null);
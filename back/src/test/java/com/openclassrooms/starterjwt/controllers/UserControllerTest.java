@@ -1,8 +1,14 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.dto.UserDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
+import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.services.SessionCursor;
+import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -10,6 +16,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -17,6 +25,8 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -36,6 +46,12 @@ class UserControllerTest {
     @MockBean
     private UserMapper userMapper;
 
+    @MockBean
+    private SessionService sessionService;
+
+    @MockBean
+    private SessionMapper sessionMapper;
+
     @AfterEach
     void tearDown() {
         SecurityContextHolder.clearContext();
@@ -52,6 +68,16 @@ class UserControllerTest {
         SecurityContextHolder.getContext().setAuthentication(auth);
     }
 
+    private void setPrincipal(Long id, boolean admin) {
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(id)
+                .username("user" + id + "@doe.com")
+                .admin(admin)
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
     @Test
     void findById_shouldReturn200_whenFound() throws Exception {
         User user = new User();
@@ -86,6 +112,107 @@ class UserControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void findSessions_shouldReturnSummaries_withNextCursor() throws Exception {
+        User user = new User();
+        user.setId(1L);
+        Session session = new Session().setId(7L).setDate(new Date(1_000L));
+        List<Session> sessions = Collections.singletonList(session);
+        SessionDto dto = new SessionDto();
+        dto.setId(7L);
+        dto.setParticipantCount(3L);
+
+        when(userService.findById(1L)).thenReturn(user);
+        setPrincipal(1L, false);
+        when(sessionService.findJoined(eq(1L), eq(false), isNull(), eq(1)))
+                .thenReturn(new SliceImpl<>(sessions, PageRequest.of(0, 1), true));
+        when(sessionMapper.toSummaryDto(sessions)).thenReturn(Collections.singletonList(dto));
+
+        mockMvc.perform(get("/api/user/1/sessions").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(7))
+                .andExpect(jsonPath("$.items[0].participantCount").value(3))
+                .andExpect(jsonPath("$.items[0].users").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor").value(SessionCursor.of(session).encode()));
+    }
+
+    @Test
+    void findSessions_shouldPassPastAndCursorThrough() throws Exception {
+        User user = new User();
+        user.setId(1L);
+        String cursor = new SessionCursor(new Date(5_000L), 9L, true).encode();
+
+        when(userService.findById(1L)).thenReturn(user);
+        setPrincipal(1L, false);
+        when(sessionService.findJoined(eq(1L), eq(true), any(SessionCursor.class), isNull()))
+                .thenReturn(new SliceImpl<>(Collections.emptyList()));
+
+        mockMvc.perform(get("/api/user/1/sessions").param("past", "true").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        verify(sessionService).findJoined(eq(1L), eq(true), argThat(after ->
+                after.getId() == 9L && after.getDate().getTime() == 5_000L && after.isDescending()), isNull());
+    }
+
+    @Test
+    void findSessions_shouldIssuePastCursors_forPastListings() throws Exception {
+        User user = new User();
+        user.setId(1L);
+        Session session = new Session().setId(7L).setDate(new Date(1_000L));
+        List<Session> sessions = Collections.singletonList(session);
+
+        when(userService.findById(1L)).thenReturn(user);
+        setPrincipal(1L, false);
+        when(sessionService.findJoined(eq(1L), eq(true), isNull(), isNull()))
+                .thenReturn(new SliceImpl<>(sessions, PageRequest.of(0, 1), true));
+
+        mockMvc.perform(get("/api/user/1/sessions").param("past", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nextCursor").value(SessionCursor.of(session, true).encode()));
+    }
+
+    @Test
+    void findSessions_shouldReturn401_forAnotherUser() throws Exception {
+        setPrincipal(2L, false);
+
+        mockMvc.perform(get("/api/user/1/sessions"))
+                .andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(userService, sessionService);
+    }
+
+    @Test
+    void findSessions_shouldAllowAdmins() throws Exception {
+        User user = new User();
+        user.setId(1L);
+
+        when(userService.findById(1L)).thenReturn(user);
+        setPrincipal(2L, true);
+        when(sessionService.findJoined(eq(1L), eq(false), isNull(), isNull()))
+                .thenReturn(new SliceImpl<>(Collections.emptyList()));
+
+        mockMvc.perform(get("/api/user/1/sessions"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void findSessions_shouldReturn404_whenUserDoesNotExist() throws Exception {
+        when(userService.findById(1L)).thenReturn(null);
+        setPrincipal(2L, true);
+
+        mockMvc.perform(get("/api/user/1/sessions"))
+                .andExpect(status().isNotFound());
+
+        verifyNoInteractions(sessionService);
+    }
+
+    @Test
+    void findSessions_shouldReturn400_whenIdNotNumeric() throws Exception {
+        mockMvc.perform(get("/api/user/abc/sessions"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void delete_shouldReturn200_whenUserExists_andPrincipalMatchesEmail() throws Exception {
         User user = new User();
@@ -0,0 +1,145 @@
+package com.openclassrooms.starterjwt.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives the broadcaster with emitters that record what they are sent, one of them stalled the
+ * way a client on a dead network would be.
+ */
+class SessionEventBroadcasterTest {
+    private static final int QUEUE_SIZE = 4;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<RecordingEmitter> emitters = new ArrayList<>();
+
+    private final CountDownLatch stalled = new CountDownLatch(1);
+
+    private SessionEventBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        SessionRepository sessionRepository = mock(SessionRepository.class);
+        when(sessionRepository.findSeats(anyCollection())).thenAnswer(invocation ->
+                ((Collection<?>) invocation.getArgument(0)).stream()
+                        .map(id -> seats((Long) id))
+                        .collect(Collectors.toList()));
+
+        broadcaster = new SessionEventBroadcaster(sessionRepository, new ObjectMapper(), meterRegistry,
+                100, 10, 60_000, 3600, QUEUE_SIZE, 2) {
+            @Override
+            SseEmitter newEmitter(long timeoutMillis) {
+                // The first subscriber never gets past its first event until released
+                RecordingEmitter emitter = new RecordingEmitter(emitters.isEmpty() ? stalled : null);
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        stalled.countDown();
+        broadcaster.destroy();
+    }
+
+    @Test
+    void slowSubscriber_shouldNotDelayOthers_andBeDisconnectedOnOverflow() throws Exception {
+        broadcaster.subscribe(null);
+        broadcaster.subscribe(null);
+        RecordingEmitter slow = emitters.get(0);
+        RecordingEmitter fast = emitters.get(1);
+        await(() -> meterRegistry.get("sessions.events.subscribers").gauge().value() == 2);
+
+        int events = QUEUE_SIZE * 3;
+        for (int id = 1; id <= events; id++) {
+            broadcaster.onSessionChanged(new SessionChangedEvent(SessionChangedEvent.Type.CREATED, (long) id, null));
+            int sent = id;
+            await(() -> fast.sent.get() == sent);
+        }
+
+        assertEquals(1, meterRegistry.get("sessions.events.overflows").counter().count());
+        assertEquals(0, slow.sent.get());
+        assertEquals(1, meterRegistry.get("sessions.events.subscribers").gauge().value());
+
+        stalled.countDown();
+        await(() -> slow.completed);
+        assertEquals(1, slow.sent.get());
+        assertFalse(fast.completed);
+    }
+
+    private static SessionRepository.Seats seats(Long id) {
+        return new SessionRepository.Seats() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getCapacity() {
+                return 10;
+            }
+
+            @Override
+            public int getSeatsTaken() {
+                return 0;
+            }
+        };
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+        private final CountDownLatch gate;
+
+        private final AtomicInteger sent = new AtomicInteger();
+
+        private volatile boolean completed;
+
+        private RecordingEmitter(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            sent.incrementAndGet();
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+    }
+}
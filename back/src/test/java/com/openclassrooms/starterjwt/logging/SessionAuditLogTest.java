@@ -0,0 +1,81 @@
+package com.openclassrooms.starterjwt.logging;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionAuditLogTest {
+
+    private final SessionAuditLog auditLog = new SessionAuditLog();
+
+    private ListAppender<ILoggingEvent> appender;
+
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        logger = (Logger) LoggerFactory.getLogger(SessionAuditLog.LOGGER_NAME);
+        appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.detachAppender(appender);
+        SecurityContextHolder.clearContext();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void record_shouldWriteIdsAndFieldNames() {
+        UserDetailsImpl principal = UserDetailsImpl.builder()
+                .id(7L)
+                .username("admin@test.com")
+                .password("$2a$10$hash")
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, Collections.emptyList()));
+
+        auditLog.record(SessionAuditLog.UPDATED, 1L, null, Arrays.asList("name", "users"));
+
+        assertEquals(1, appender.list.size());
+        String line = appender.list.get(0).getFormattedMessage();
+        assertEquals("action=session.updated session_id=1 user_id=- actor_id=7 fields=[name, users]", line);
+        assertFalse(line.contains("admin@test.com"), line);
+        assertFalse(line.contains("$2a$"), line);
+    }
+
+    @Test
+    void record_shouldWaitForCommit_insideTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        auditLog.record(SessionAuditLog.JOINED, 1L, 10L);
+
+        assertTrue(appender.list.isEmpty());
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+
+        assertEquals(1, appender.list.size());
+        assertEquals("action=session.joined session_id=1 user_id=10 actor_id=- fields=[]",
+                appender.list.get(0).getFormattedMessage());
+    }
+}
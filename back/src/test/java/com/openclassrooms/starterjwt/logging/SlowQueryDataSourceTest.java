@@ -0,0 +1,112 @@
+package com.openclassrooms.starterjwt.logging;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlowQueryDataSourceTest {
+
+    private JdbcDataSource h2;
+
+    private ListAppender<ILoggingEvent> appender;
+
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        try (Connection connection = h2.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE T (id BIGINT, name VARCHAR(20))");
+            statement.execute("INSERT INTO T VALUES (1, 'a'), (2, 'b'), (3, 'c')");
+        }
+
+        logger = (Logger) LoggerFactory.getLogger(SlowQueryLog.LOGGER_NAME);
+        appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    void select_shouldLogRowCountAndParameterTypes_whenOverThreshold() throws Exception {
+        SlowQueryDataSource dataSource = new SlowQueryDataSource(h2, new SlowQueryLog(0, 1.0));
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT * FROM T WHERE id > ? AND name <> ?")) {
+            statement.setLong(1, 1L);
+            statement.setString(2, "x");
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    assertNotNull(resultSet.getString("name"));
+                }
+            }
+        }
+
+        assertEquals(1, appender.list.size());
+        String line = appender.list.get(0).getFormattedMessage();
+        assertTrue(line.contains("rows=2"), line);
+        assertTrue(line.contains("params=[Long, String]"), line);
+        assertTrue(line.contains("endpoint=\"-\""), line);
+        assertTrue(line.contains("sql=\"SELECT * FROM T WHERE id > ? AND name <> ?\""), line);
+        assertFalse(line.contains("'x'"), line);
+    }
+
+    @Test
+    void update_shouldLogAffectedRows() throws Exception {
+        SlowQueryDataSource dataSource = new SlowQueryDataSource(h2, new SlowQueryLog(0, 1.0));
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("UPDATE T SET name = ? WHERE id < ?")) {
+            statement.setNull(1, java.sql.Types.VARCHAR);
+            statement.setInt(2, 3);
+            assertEquals(2, statement.executeUpdate());
+        }
+
+        String line = appender.list.get(0).getFormattedMessage();
+        assertTrue(line.contains("rows=2"), line);
+        assertTrue(line.contains("params=[null, Integer]"), line);
+    }
+
+    @Test
+    void fastStatements_shouldNotBeLogged() throws Exception {
+        SlowQueryDataSource dataSource = new SlowQueryDataSource(h2, new SlowQueryLog(60_000, 1.0));
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM T")) {
+            assertTrue(resultSet.next());
+            assertEquals(3, resultSet.getInt(1));
+        }
+
+        assertTrue(appender.list.isEmpty());
+    }
+
+    @Test
+    void sampleRateZero_shouldSkipSlowStatements() throws Exception {
+        SlowQueryDataSource dataSource = new SlowQueryDataSource(h2, new SlowQueryLog(0, 0.0));
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM T WHERE id = 1");
+        }
+
+        assertTrue(appender.list.isEmpty());
+    }
+}
@@ -0,0 +1,100 @@
+package com.openclassrooms.starterjwt.mapper;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import com.openclassrooms.starterjwt.services.UserService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SessionMapperTest {
+
+    @Mock
+    private TeacherService teacherService;
+
+    @Mock
+    private UserService userService;
+
+    @InjectMocks
+    private SessionMapperImpl sessionMapper;
+
+    @Test
+    void toEntity_shouldResolveAllUsersInOneLookup_keepingRequestOrder() {
+        Teacher teacher = new Teacher();
+        teacher.setId(5L);
+        when(teacherService.findById(5L)).thenReturn(teacher);
+        when(userService.findAllById(new LinkedHashSet<>(Arrays.asList(3L, 1L, 2L))))
+                .thenReturn(Arrays.asList(user(1L), user(2L), user(3L)));
+
+        Session session = sessionMapper.toEntity(dto(5L, Arrays.asList(3L, 1L, 2L, 1L)));
+
+        assertSame(teacher, session.getTeacher());
+        assertEquals(3, session.getUsers().size());
+        assertEquals(3L, session.getUsers().get(0).getId());
+        assertEquals(1L, session.getUsers().get(1).getId());
+        assertEquals(2L, session.getUsers().get(2).getId());
+        verify(userService, never()).findById(anyLong());
+    }
+
+    @Test
+    void toEntity_shouldReportEveryUnknownUserId() {
+        when(teacherService.findById(5L)).thenReturn(new Teacher());
+        when(userService.findAllById(new LinkedHashSet<>(Arrays.asList(1L, 2L, 3L))))
+                .thenReturn(Collections.singletonList(user(2L)));
+
+        BadRequestException ex = assertThrows(BadRequestException.class,
+                () -> sessionMapper.toEntity(dto(5L, Arrays.asList(1L, 2L, 3L))));
+
+        assertTrue(ex.getMessage().contains("[1, 3]"));
+    }
+
+    @Test
+    void toEntity_shouldReject_whenTeacherUnknown() {
+        when(teacherService.findById(5L)).thenReturn(null);
+
+        assertThrows(BadRequestException.class, () -> sessionMapper.toEntity(dto(5L, null)));
+    }
+
+    @Test
+    void toEntity_shouldNotQueryUsers_whenNoParticipants() {
+        when(teacherService.findById(5L)).thenReturn(new Teacher());
+
+        Session session = sessionMapper.toEntity(dto(5L, null));
+
+        assertTrue(session.getUsers().isEmpty());
+        verifyNoInteractions(userService);
+    }
+
+    private static SessionDto dto(Long teacherId, List<Long> users) {
+        SessionDto dto = new SessionDto();
+        dto.setName("Morning yoga");
+        dto.setDate(new Date());
+        dto.setDescription("Relax");
+        dto.setTeacher_id(teacherId);
+        dto.setUsers(users);
+        return dto;
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,54 @@
+package com.openclassrooms.starterjwt.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.web.server.LocalManagementPort;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Scrapes the Prometheus endpoint from the separate, loopback-bound management port without
+ * credentials and checks that the meters the dashboards rely on are exposed.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "management.server.port=0")
+@AutoConfigureMetrics
+class PrometheusEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Test
+    void prometheus_shouldExposeControllerRepositoryAuthPoolAndCacheMetrics() {
+        Map<String, String> signup = new HashMap<>();
+        signup.put("email", "metrics@yoga.test");
+        signup.put("firstName", "Metrics");
+        signup.put("lastName", "Scrape");
+        signup.put("password", "password");
+        assertEquals(HttpStatus.OK, restTemplate.postForEntity("/api/auth/register", signup, String.class).getStatusCode());
+
+        ResponseEntity<String> scrape = restTemplate.getForEntity(
+                "http://127.0.0.1:" + managementPort + "/actuator/prometheus", String.class);
+
+        assertEquals(HttpStatus.OK, scrape.getStatusCode());
+        String body = scrape.getBody();
+        assertTrue(body.contains("handler=\"AuthController.registerUser\""));
+        assertTrue(body.contains("spring_data_repository_invocations_seconds_count{"));
+        assertTrue(body.contains("auth_password_hash_seconds_count{"));
+        assertTrue(body.contains("auth_password_hash_queue"));
+        assertTrue(body.contains("hikaricp_connections_active"));
+        assertTrue(body.contains("hibernate_second_level_cache_requests_total{"), "second-level cache region stats");
+    }
+}
@@ -0,0 +1,75 @@
+package com.openclassrooms.starterjwt.migration;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Migrates a database left in the state of the old hand-run script, with the data it allowed,
+ * from V1 to V2.
+ */
+class AdoptedDatabaseMigrationTest {
+
+    private DriverManagerDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        flyway("1").migrate();
+
+        jdbcTemplate.update("INSERT INTO TEACHERS (id, first_name, last_name) VALUES (1, 'Margot', 'Delahaye')");
+        jdbcTemplate.update("INSERT INTO SESSIONS (id, name, description, date, teacher_id)"
+                + " VALUES (1, 'Morning', 'Flow', CURRENT_TIMESTAMP, 1), (2, 'Evening', 'Yin', CURRENT_TIMESTAMP, 1)");
+        jdbcTemplate.update("INSERT INTO USERS (id, email, first_name, last_name, password)"
+                + " VALUES (1, 'a@yoga.test', 'A', 'A', 'x'), (2, 'b@yoga.test', 'B', 'B', 'x')");
+    }
+
+    @Test
+    void migrate_shouldDropIncompleteAndRepeatedParticipations_beforeCountingSeats() {
+        jdbcTemplate.update("INSERT INTO PARTICIPATE (session_id, user_id)"
+                + " VALUES (1, 1), (1, 1), (1, 1), (1, 2), (2, 2), (2, NULL), (NULL, 1)");
+
+        flyway("2").migrate();
+
+        assertEquals(3, count("SELECT COUNT(*) FROM PARTICIPATE"));
+        assertEquals(1, count("SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = 1 AND user_id = 1"));
+        assertEquals(2, count("SELECT seats_taken FROM SESSIONS WHERE id = 1"));
+        assertEquals(1, count("SELECT seats_taken FROM SESSIONS WHERE id = 2"));
+    }
+
+    @Test
+    void migrate_shouldStop_andNameRepeatedEmails() {
+        jdbcTemplate.update("INSERT INTO USERS (email, first_name, last_name, password)"
+                + " VALUES ('a@yoga.test', 'A', 'Again', 'x'), ('a@yoga.test', 'A', 'Thrice', 'x')");
+
+        FlywayException error = assertThrows(FlywayException.class, () -> flyway("2").migrate());
+
+        assertTrue(error.getMessage().contains("a@yoga.test (3 accounts)"), error.getMessage());
+        assertFalse(error.getMessage().contains("b@yoga.test"), error.getMessage());
+        assertEquals("1", jdbcTemplate.queryForObject(
+                "SELECT MAX(\"version\") FROM \"flyway_schema_history\" WHERE \"success\" = TRUE", String.class));
+    }
+
+    private Flyway flyway(String target) {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .callbacks(new DuplicateEmailCheck())
+                .target(target)
+                .load();
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+}
@@ -0,0 +1,314 @@
+package com.openclassrooms.starterjwt.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Boots the full application, security filters included, against a seeded embedded database
+ * and holds each endpoint to a SQL statement budget and a p95 latency budget. Statement
+ * budgets are exact ceilings and catch N+1 regressions; they are counted on the data source,
+ * so raw JDBC and {@code JdbcTemplate} calls count alongside Hibernate's, and measured with the
+ * second-level and query caches emptied before every request, so a cache hit cannot
+ * hide one. Latency budgets are deliberately loose and only checked with {@code mvn test -Pperf};
+ * they can be scaled on slow machines with {@code -Dperf.latencyFactor=2}.
+ */
+@Tag("perf")
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ApiPerformanceTest {
+    private static final Logger logger = LoggerFactory.getLogger(ApiPerformanceTest.class);
+
+    private static final int TEACHERS = 20;
+    private static final int SESSIONS = 500;
+    private static final int USERS = 2000;
+    private static final int PARTICIPANTS_PER_SESSION = 20;
+
+    private static final int STATEMENT_RUNS = 5;
+    private static final int WARMUP = 30;
+    private static final int ITERATIONS = 50;
+    private static final int REQUESTS = 1 + STATEMENT_RUNS + WARMUP + ITERATIONS;
+
+    private static final String EMAIL = "perf@yoga.test";
+    private static final String PASSWORD = "perf-password";
+
+    private static final boolean LATENCY = Boolean.getBoolean("perf.latency");
+    private static final double LATENCY_FACTOR = Double.parseDouble(System.getProperty("perf.latencyFactor", "1"));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private SessionFactory sessionFactory;
+
+    private StatementCountingDataSource statements;
+
+    private String token;
+
+    private final List<Long> sessionIds = new ArrayList<>();
+
+    private final List<Long> userIds = new ArrayList<>();
+
+    @BeforeAll
+    void seed() throws Exception {
+        sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        statements = dataSource.unwrap(StatementCountingDataSource.class);
+
+        List<Object[]> teachers = new ArrayList<>();
+        for (int i = 0; i < TEACHERS; i++) {
+            teachers.add(new Object[]{"Teacher" + i, "Last" + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO TEACHERS (first_name, last_name) VALUES (?, ?)", teachers);
+        List<Long> teacherIds = jdbcTemplate.queryForList("SELECT id FROM TEACHERS ORDER BY id", Long.class);
+
+        List<Object[]> users = new ArrayList<>();
+        // An admin, so the perf user may list every user's sessions
+        users.add(new Object[]{EMAIL, "Perf", "User", passwordEncoder.encode(PASSWORD), true});
+        for (int i = 1; i < USERS; i++) {
+            users.add(new Object[]{"user" + i + "@yoga.test", "First" + i, "Last" + i, "hash", false});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO USERS (email, first_name, last_name, password, admin) VALUES (?, ?, ?, ?, ?)", users);
+        userIds.addAll(jdbcTemplate.queryForList("SELECT id FROM USERS ORDER BY id", Long.class));
+
+        long now = System.currentTimeMillis();
+        List<Object[]> sessions = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            sessions.add(new Object[]{
+                    "Session " + i,
+                    "Description " + i,
+                    new Timestamp(now + i * 3_600_000L),
+                    teacherIds.get(i % TEACHERS),
+                    PARTICIPANTS_PER_SESSION});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO SESSIONS (name, description, date, teacher_id, seats_taken) VALUES (?, ?, ?, ?, ?)",
+                sessions);
+        sessionIds.addAll(jdbcTemplate.queryForList("SELECT id FROM SESSIONS ORDER BY id", Long.class));
+
+        List<Object[]> participations = new ArrayList<>();
+        for (int s = 0; s < SESSIONS; s++) {
+            for (int p = 0; p < PARTICIPANTS_PER_SESSION; p++) {
+                participations.add(new Object[]{
+                        sessionIds.get(s),
+                        userIds.get(1 + (s * PARTICIPANTS_PER_SESSION + p) % (USERS - 1))});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", participations);
+
+        JsonNode login = objectMapper.readTree(perform(loginRequest()).getResponse().getContentAsString());
+        token = login.get("token").asText();
+    }
+
+    @Test
+    void listSessions() throws Exception {
+        assertBudget("GET /api/session", 2, 100,
+                () -> get("/api/session").header("Authorization", bearer()));
+    }
+
+    @Test
+    void listSessionsWithCounts() throws Exception {
+        assertBudget("GET /api/session?participants=count", 2, 100,
+                () -> get("/api/session").param("participants", "count").header("Authorization", bearer()));
+    }
+
+    @Test
+    void listAllSessionsUnpaged() throws Exception {
+        assertBudget("GET /api/session?unpaged=true", 2, 1500,
+                () -> get("/api/session").param("unpaged", "true").header("Authorization", bearer()));
+    }
+
+    @Test
+    void findSessionById() throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        assertBudget("GET /api/session/{id}", 2, 50,
+                () -> get("/api/session/" + sessionIds.get(next.getAndIncrement() % SESSIONS))
+                        .header("Authorization", bearer()));
+    }
+
+    @Test
+    void listJoinedSessions() throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        assertBudget("GET /api/user/{id}/sessions", 2, 100,
+                () -> get("/api/user/" + userIds.get(1 + next.getAndIncrement() % (USERS - 1)) + "/sessions")
+                        .header("Authorization", bearer()));
+    }
+
+    @Test
+    void revalidateSessions() throws Exception {
+        List<String> tags = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            tags.add(perform(get("/api/session/" + sessionIds.get(i)).header("Authorization", bearer()))
+                    .getResponse().getHeader(HttpHeaders.ETAG));
+        }
+        String listTag = perform(get("/api/session").header("Authorization", bearer()))
+                .getResponse().getHeader(HttpHeaders.ETAG);
+
+        AtomicInteger next = new AtomicInteger();
+        assertBudget("GET /api/session/{id} (If-None-Match)", 1, 50, () -> {
+            int i = next.getAndIncrement();
+            return get("/api/session/" + sessionIds.get(i))
+                    .header(HttpHeaders.IF_NONE_MATCH, tags.get(i))
+                    .header("Authorization", bearer());
+        });
+        assertBudget("GET /api/session (If-None-Match)", 1, 100,
+                () -> get("/api/session").header(HttpHeaders.IF_NONE_MATCH, listTag).header("Authorization", bearer()));
+
+        status().isNotModified().match(perform(get("/api/session/" + sessionIds.get(0))
+                .header(HttpHeaders.IF_NONE_MATCH, tags.get(0))
+                .header("Authorization", bearer())));
+    }
+
+    @Test
+    void participateAndLeave() throws Exception {
+        Long sessionId = sessionIds.get(0);
+        AtomicInteger joiner = new AtomicInteger();
+        AtomicInteger leaver = new AtomicInteger();
+        // users from the tail of the seed never participate in session 0
+        List<Long> candidates = userIds.subList(USERS - REQUESTS, USERS);
+
+        assertBudget("POST /api/session/{id}/participate/{userId}", 7, 100,
+                () -> post("/api/session/" + sessionId + "/participate/" + candidates.get(joiner.getAndIncrement()))
+                        .header("Authorization", bearer()));
+        assertBudget("DELETE /api/session/{id}/participate/{userId}", 4, 100,
+                () -> delete("/api/session/" + sessionId + "/participate/" + candidates.get(leaver.getAndIncrement()))
+                        .header("Authorization", bearer()));
+    }
+
+    @Test
+    void login() throws Exception {
+        assertBudget("POST /api/auth/login", 1, 500, this::loginRequest);
+    }
+
+    private RequestBuilder loginRequest() {
+        return post("/api/auth/login")
+                .contentType(APPLICATION_JSON)
+                .content("{\"email\":\"" + EMAIL + "\",\"password\":\"" + PASSWORD + "\"}");
+    }
+
+    private String bearer() {
+        return "Bearer " + token;
+    }
+
+    private void assertBudget(String endpoint, long maxStatements, long p95BudgetMs,
+                              RequestSupplier request) throws Exception {
+        // Fills what is not a SQL cache, such as the authenticated user
+        perform(request.get());
+
+        long worstStatements = 0;
+        for (int i = 0; i < STATEMENT_RUNS; i++) {
+            RequestBuilder builder = request.get();
+            evictCaches();
+            statements.clear();
+            perform(builder);
+            worstStatements = Math.max(worstStatements, statements.getExecutedCount());
+        }
+        logger.info("{} statements={} (max {})", endpoint, worstStatements, maxStatements);
+        assertTrue(worstStatements <= maxStatements,
+                endpoint + " ran " + worstStatements + " SQL statements, budget is " + maxStatements);
+
+        if (!LATENCY) {
+            return;
+        }
+        for (int i = 0; i < WARMUP; i++) {
+            perform(request.get());
+        }
+        long[] latencies = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            RequestBuilder builder = request.get();
+            long start = System.nanoTime();
+            perform(builder);
+            latencies[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(latencies);
+        double p95Ms = latencies[(int) Math.ceil(ITERATIONS * 0.95) - 1] / 1_000_000.0;
+        double budgetMs = p95BudgetMs * LATENCY_FACTOR;
+        logger.info("{} p95={}ms (max {}ms)", endpoint, String.format("%.1f", p95Ms), String.format("%.0f", budgetMs));
+        assertTrue(p95Ms <= budgetMs,
+                endpoint + " p95 latency " + p95Ms + "ms exceeds budget of " + budgetMs + "ms");
+    }
+
+    private void evictCaches() {
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    private MvcResult perform(RequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        if (result.getResponse().getStatus() != HttpStatus.NOT_MODIFIED.value()) {
+            status().is2xxSuccessful().match(result);
+        }
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface RequestSupplier {
+        RequestBuilder get();
+    }
+
+    @TestConfiguration
+    static class StatementCountingConfig {
+        @Bean
+        static BeanPostProcessor statementCountingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource && !(bean instanceof StatementCountingDataSource)) {
+                        return new StatementCountingDataSource((DataSource) bean);
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+}
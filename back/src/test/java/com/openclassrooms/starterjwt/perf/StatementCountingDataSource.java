@@ -0,0 +1,73 @@
+package com.openclassrooms.starterjwt.perf;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts every statement sent to the database, whoever sends it: Hibernate, {@code JdbcTemplate}
+ * or raw JDBC through {@code Session.doWork}. Each {@code execute*} call is one round trip, a
+ * batch included.
+ */
+class StatementCountingDataSource extends DelegatingDataSource {
+    private final AtomicLong executed = new AtomicLong();
+
+    StatementCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    long getExecutedCount() {
+        return executed.get();
+    }
+
+    void clear() {
+        executed.set(0);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof Statement) {
+                Statement statement = (Statement) result;
+                return proxy(method.getReturnType(), statement, (statementProxy, statementMethod, statementArgs) -> {
+                    if (statementMethod.getName().startsWith("execute")) {
+                        executed.incrementAndGet();
+                    }
+                    return invoke(statement, statementMethod, statementArgs);
+                });
+            }
+            return result;
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(target.getClass().getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,77 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.migration.DuplicateEmailCheck;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against the schema built by the Flyway migrations; the context only starts when the
+ * entities validate against it.
+ */
+@SpringBootTest
+class SchemaMigrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private Flyway flyway;
+
+    @Test
+    void migrations_shouldAllBeApplied() {
+        Integer failed = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM \"flyway_schema_history\" WHERE \"success\" = FALSE", Integer.class);
+        String version = jdbcTemplate.queryForObject(
+                "SELECT MAX(\"version\") FROM \"flyway_schema_history\"", String.class);
+
+        assertEquals(0, failed);
+        assertEquals("5", version);
+    }
+
+    @Test
+    void migrations_shouldRunTheDuplicateEmailCheck() {
+        assertTrue(Arrays.stream(flyway.getConfiguration().getCallbacks())
+                .anyMatch(callback -> callback instanceof DuplicateEmailCheck));
+    }
+
+    @Test
+    void loginByEmail_shouldUseUniqueIndex() {
+        assertPlanUses("UK_USERS_EMAIL", "SELECT id FROM USERS WHERE email = 'yoga@studio.com'");
+    }
+
+    @Test
+    void sessionsByDate_shouldUseDateIndex() {
+        assertPlanUses("IDX_SESSIONS_DATE",
+                "SELECT id FROM SESSIONS WHERE date > CURRENT_TIMESTAMP ORDER BY date, id");
+    }
+
+    @Test
+    void sessionsByTeacher_shouldUseTeacherDateIndex() {
+        assertPlanUses("IDX_SESSIONS_TEACHER_DATE",
+                "SELECT id FROM SESSIONS WHERE teacher_id = 1 ORDER BY date, id");
+    }
+
+    @Test
+    void participationsByUser_shouldUseUserIndex() {
+        assertPlanUses("IDX_PARTICIPATE_USER", "SELECT session_id FROM PARTICIPATE WHERE user_id = 1");
+    }
+
+    @Test
+    void participationsBySession_shouldUsePrimaryKey() {
+        assertPlanUses("PRIMARY_KEY", "SELECT user_id FROM PARTICIPATE WHERE session_id = 1");
+    }
+
+    private void assertPlanUses(String index, String query) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + query, String.class);
+
+        assertNotNull(plan);
+        assertTrue(plan.contains(index), plan);
+    }
+}
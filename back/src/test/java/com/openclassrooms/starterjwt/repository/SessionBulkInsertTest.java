@@ -0,0 +1,113 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.services.SessionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SessionBulkInsertTest {
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Teacher teacher;
+
+    private User first;
+
+    private User second;
+
+    @BeforeEach
+    void setUp() {
+        teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("Delahaye"));
+        first = userRepository.save(new User(UUID.randomUUID() + "@yoga.test", "Last", "First", "hash", false));
+        second = userRepository.save(new User(UUID.randomUUID() + "@yoga.test", "Last", "First", "hash", false));
+    }
+
+    @Test
+    void insertAll_shouldAssignGeneratedIds_andWriteRosters() {
+        List<Session> sessions = Arrays.asList(
+                session("A", first, second),
+                session("B"),
+                session("C", second));
+
+        transactionTemplate.executeWithoutResult(status -> sessionRepository.insertAll(sessions));
+
+        for (Session session : sessions) {
+            assertNotNull(session.getId());
+            Session stored = sessionService.getById(session.getId());
+            assertEquals(session.getName(), stored.getName());
+            assertEquals(teacher.getId(), stored.getTeacher().getId());
+            assertEquals(session.getUsers().size(), stored.getSeatsTaken());
+            assertEquals(0, stored.getRevision());
+            assertNotNull(stored.getCreatedAt());
+            assertEquals(stored.getCreatedAt(), stored.getUpdatedAt());
+        }
+        assertEquals(Arrays.asList(first.getId(), second.getId()), sessionService.findParticipantIds(sessions.get(0).getId()));
+        assertEquals(Collections.singletonList(second.getId()), sessionService.findParticipantIds(sessions.get(2).getId()));
+        assertNotNull(jdbcTemplate.queryForObject("SELECT updated_at FROM SESSIONS WHERE id = ?",
+                Timestamp.class, sessions.get(1).getId()));
+    }
+
+    @Test
+    void insertAll_shouldInvalidateCachedSessionLists() {
+        int before = sessionService.findAll().size();
+
+        transactionTemplate.executeWithoutResult(status -> sessionRepository.insertAll(
+                Collections.singletonList(session("New"))));
+
+        assertEquals(before + 1, sessionService.findAll().size());
+    }
+
+    @Test
+    void insertAll_shouldRollBackWithTheTransaction() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM SESSIONS", Long.class);
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            sessionRepository.insertAll(Collections.singletonList(session("Rolled back", first)));
+            throw new IllegalStateException();
+        }));
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SESSIONS WHERE id > ?", Integer.class, maxId));
+    }
+
+    private Session session(String name, User... users) {
+        return new Session()
+                .setName(name)
+                .setDescription("Class")
+                .setDate(new Date())
+                .setTeacher(teacher)
+                .setUsers(new ArrayList<>(Arrays.asList(users)));
+    }
+}
@@ -0,0 +1,69 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.jsonwebtoken.impl.DefaultClaims;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AuthTokenFilterTest {
+
+    private AuthTokenFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        JwtTokenCache jwtTokenCache = mock(JwtTokenCache.class);
+        when(jwtTokenCache.getValidClaims("valid")).thenReturn(new DefaultClaims().setSubject("yoga@studio.com"));
+        UserDetailsCache userDetailsCache = mock(UserDetailsCache.class);
+        when(userDetailsCache.loadUserByUsername("yoga@studio.com"))
+                .thenReturn(UserDetailsImpl.builder().id(1L).username("yoga@studio.com").build());
+
+        filter = new AuthTokenFilter();
+        ReflectionTestUtils.setField(filter, "jwtTokenCache", jwtTokenCache);
+        ReflectionTestUtils.setField(filter, "userDetailsCache", userDetailsCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_shouldAuthenticate_fromTheBearerHeader() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/session");
+        request.addHeader("Authorization", "Bearer valid");
+
+        assertEquals("yoga@studio.com", authenticate(request).getName());
+    }
+
+    @Test
+    void doFilter_shouldAuthenticate_theEventStream_fromTheTokenParameter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", AuthTokenFilter.EVENTS_PATH);
+        request.setParameter(AuthTokenFilter.TOKEN_PARAMETER, "valid");
+
+        assertEquals("yoga@studio.com", authenticate(request).getName());
+    }
+
+    @Test
+    void doFilter_shouldIgnoreTheTokenParameter_elsewhere() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/session");
+        request.setParameter(AuthTokenFilter.TOKEN_PARAMETER, "valid");
+
+        assertNull(authenticate(request));
+    }
+
+    private Authentication authenticate(MockHttpServletRequest request) throws Exception {
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
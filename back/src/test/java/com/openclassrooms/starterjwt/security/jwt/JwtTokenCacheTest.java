@@ -0,0 +1,108 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.impl.DefaultClaims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtTokenCacheTest {
+
+    private JwtUtils jwtUtils;
+
+    private final AtomicLong millis = new AtomicLong(1_700_000_000_000L);
+
+    private JwtTokenCache cache;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtils = mock(JwtUtils.class);
+        cache = new JwtTokenCache(jwtUtils, 2, new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(millis.get());
+            }
+        });
+    }
+
+    @Test
+    void getValidClaims_shouldParseOnce_forRepeatedToken() {
+        Claims claims = claims("john@doe.com", 60_000);
+        when(jwtUtils.parseValidClaims("token")).thenReturn(claims);
+
+        assertSame(claims, cache.getValidClaims("token"));
+        assertSame(claims, cache.getValidClaims("token"));
+
+        verify(jwtUtils, times(1)).parseValidClaims("token");
+    }
+
+    @Test
+    void getValidClaims_shouldNotCache_invalidToken() {
+        when(jwtUtils.parseValidClaims("bad")).thenReturn(null);
+
+        assertNull(cache.getValidClaims("bad"));
+        assertNull(cache.getValidClaims("bad"));
+
+        verify(jwtUtils, times(2)).parseValidClaims("bad");
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void getValidClaims_shouldReparse_afterTokenExpiry() {
+        when(jwtUtils.parseValidClaims("token")).thenReturn(claims("john@doe.com", 60_000), (Claims) null);
+
+        assertNotNull(cache.getValidClaims("token"));
+        millis.addAndGet(61_000);
+
+        assertNull(cache.getValidClaims("token"));
+        verify(jwtUtils, times(2)).parseValidClaims("token");
+    }
+
+    @Test
+    void getValidClaims_shouldStayBounded() {
+        for (int i = 0; i < 10; i++) {
+            when(jwtUtils.parseValidClaims("token" + i)).thenReturn(claims("user" + i, 60_000));
+            cache.getValidClaims("token" + i);
+        }
+
+        assertTrue(cache.size() <= 2);
+    }
+
+    @Test
+    void getValidClaims_shouldNotCache_tokenExpiredOnTheCacheClock() {
+        Claims claims = claims("john@doe.com", 60_000);
+        when(jwtUtils.parseValidClaims("token")).thenReturn(claims);
+        millis.addAndGet(60_000);
+
+        cache.getValidClaims("token");
+        cache.getValidClaims("token");
+
+        verify(jwtUtils, times(2)).parseValidClaims("token");
+    }
+
+    private Claims claims(String subject, long expiresInMs) {
+        Claims claims = new DefaultClaims();
+        claims.setSubject(subject);
+        claims.setExpiration(new Date(millis.get() + expiresInMs));
+        return claims;
+    }
+}
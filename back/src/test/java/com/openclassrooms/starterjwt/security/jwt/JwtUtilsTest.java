@@ -1,8 +1,10 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.core.Authentication;
@@ -107,6 +109,59 @@ class JwtUtilsTest {
         assertFalse(jwtUtils.validateJwtToken("not-a-jwt-token"));
     }
 
+    @Test
+    void parseValidClaims_shouldCountOutcomeByFailureType() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        setField(jwtUtils, "meterRegistry", meterRegistry);
+        String valid = Jwts.builder()
+                .setSubject("john@doe.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS512, secret)
+                .compact();
+        String expired = Jwts.builder()
+                .setSubject("john@doe.com")
+                .setExpiration(new Date(System.currentTimeMillis() - 60_000))
+                .signWith(SignatureAlgorithm.HS512, secret)
+                .compact();
+
+        jwtUtils.parseValidClaims(valid);
+        jwtUtils.parseValidClaims(expired);
+        jwtUtils.parseValidClaims("not-a-jwt-token");
+        jwtUtils.parseValidClaims("");
+
+        assertEquals(1.0, meterRegistry.counter("auth.jwt.validation", "outcome", "valid").count());
+        assertEquals(1.0, meterRegistry.counter("auth.jwt.validation", "outcome", "expired").count());
+        assertEquals(1.0, meterRegistry.counter("auth.jwt.validation", "outcome", "malformed").count());
+        assertEquals(1.0, meterRegistry.counter("auth.jwt.validation", "outcome", "empty").count());
+    }
+
+    @Test
+    void parseValidClaims_shouldReturnClaims_forValidToken() {
+        String token = Jwts.builder()
+                .setSubject("john@doe.com")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS512, secret)
+                .compact();
+
+        Claims claims = jwtUtils.parseValidClaims(token);
+
+        assertNotNull(claims);
+        assertEquals("john@doe.com", claims.getSubject());
+        assertNotNull(claims.getExpiration());
+    }
+
+    @Test
+    void parseValidClaims_shouldReturnNull_whenSignatureInvalid() {
+        String token = Jwts.builder()
+                .setSubject("john@doe.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS512, "another-secret")
+                .compact();
+
+        assertNull(jwtUtils.parseValidClaims(token));
+    }
+
     private static void setField(Object target, String fieldName, Object value) throws Exception {
         Field f = target.getClass().getDeclaredField(fieldName);
         f.setAccessible(true);
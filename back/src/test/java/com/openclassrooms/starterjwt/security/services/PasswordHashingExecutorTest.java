@@ -0,0 +1,74 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingExecutorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PasswordHashingExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new PasswordHashingExecutor(meterRegistry, 1, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    void submit_shouldRunTaskOffCallerThread_andRecordLatency() throws Exception {
+        String caller = Thread.currentThread().getName();
+
+        String worker = executor.submit(PasswordHashingExecutor.LOGIN, () -> Thread.currentThread().getName())
+                .get(5, TimeUnit.SECONDS);
+
+        assertNotEquals(caller, worker);
+        assertTrue(worker.startsWith("password-hash-"));
+        assertEquals(1, meterRegistry.get("auth.password.hash").tag("operation", "login").timer().count());
+    }
+
+    @Test
+    void submit_shouldRejectFast_whenPoolAndQueueAreFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> running = executor.submit(PasswordHashingExecutor.LOGIN, () -> {
+            started.countDown();
+            return await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = executor.submit(PasswordHashingExecutor.LOGIN, () -> true);
+
+        assertEquals(1.0, meterRegistry.get("auth.password.hash.queue").gauge().value());
+        assertThrows(ServiceUnavailableException.class,
+                () -> executor.submit(PasswordHashingExecutor.REGISTER, () -> true));
+        assertEquals(1.0, meterRegistry.get("auth.password.hash.rejected").counter().count());
+
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserDetailsCacheTest {
+
+    private UserDetailsServiceImpl userDetailsService;
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private UserDetailsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService = mock(UserDetailsServiceImpl.class);
+        cache = new UserDetailsCache(userDetailsService, 100, Duration.ofMinutes(5), nanos::get);
+    }
+
+    @Test
+    void loadUserByUsername_shouldHitDelegateOnce_andDropPassword() {
+        when(userDetailsService.loadUserByUsername("john@doe.com")).thenReturn(user(1L, "john@doe.com"));
+
+        UserDetailsImpl first = cache.loadUserByUsername("john@doe.com");
+        UserDetailsImpl second = cache.loadUserByUsername("john@doe.com");
+
+        assertSame(first, second);
+        assertEquals(1L, first.getId());
+        assertEquals("John", first.getFirstName());
+        assertNull(first.getPassword());
+        verify(userDetailsService, times(1)).loadUserByUsername("john@doe.com");
+    }
+
+    @Test
+    void loadUserByUsername_shouldReload_afterTtl() {
+        when(userDetailsService.loadUserByUsername("john@doe.com")).thenReturn(user(1L, "john@doe.com"));
+
+        cache.loadUserByUsername("john@doe.com");
+        nanos.addAndGet(Duration.ofMinutes(6).toNanos());
+        cache.loadUserByUsername("john@doe.com");
+
+        verify(userDetailsService, times(2)).loadUserByUsername("john@doe.com");
+    }
+
+    @Test
+    void loadUserByUsername_shouldNotCacheUnknownUser() {
+        when(userDetailsService.loadUserByUsername("ghost@doe.com"))
+                .thenThrow(new UsernameNotFoundException("User Not Found with email: ghost@doe.com"));
+
+        assertThrows(UsernameNotFoundException.class, () -> cache.loadUserByUsername("ghost@doe.com"));
+        assertThrows(UsernameNotFoundException.class, () -> cache.loadUserByUsername("ghost@doe.com"));
+
+        verify(userDetailsService, times(2)).loadUserByUsername("ghost@doe.com");
+    }
+
+    @Test
+    void evict_shouldDropCachedPrincipalById() {
+        when(userDetailsService.loadUserByUsername("john@doe.com")).thenReturn(user(1L, "john@doe.com"));
+        when(userDetailsService.loadUserByUsername("jane@doe.com")).thenReturn(user(2L, "jane@doe.com"));
+        cache.loadUserByUsername("john@doe.com");
+        cache.loadUserByUsername("jane@doe.com");
+
+        cache.evict(1L);
+        cache.loadUserByUsername("john@doe.com");
+        cache.loadUserByUsername("jane@doe.com");
+
+        verify(userDetailsService, times(2)).loadUserByUsername("john@doe.com");
+        verify(userDetailsService, times(1)).loadUserByUsername("jane@doe.com");
+    }
+
+    private static UserDetailsImpl user(Long id, String email) {
+        return UserDetailsImpl.builder()
+                .id(id)
+                .username(email)
+                .firstName("John")
+                .lastName("Doe")
+                .admin(false)
+                .password("hash")
+                .build();
+    }
+}
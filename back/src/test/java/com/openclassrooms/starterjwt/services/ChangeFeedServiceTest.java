@@ -0,0 +1,174 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.ChangeDto;
+import com.openclassrooms.starterjwt.dto.ChangePageDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.ChangeLogRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ChangeFeedServiceTest {
+
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    @Autowired
+    private ChangeLogRepository changeLogRepository;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String head;
+
+    @BeforeEach
+    void setUp() {
+        head = String.valueOf(jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM CHANGE_LOG", Long.class));
+    }
+
+    @Test
+    void findSince_shouldListCommittedChanges_inOrder() {
+        Long userId = createUser();
+        Long sessionId = createSession();
+        sessionService.participate(sessionId, userId);
+        sessionService.noLongerParticipate(sessionId, userId);
+        sessionService.delete(sessionId);
+        userService.delete(userId);
+
+        ChangePageDto page = changeFeedService.findSince(head, null);
+
+        assertEquals(Arrays.asList("session.created", "session.joined", "session.left", "session.deleted", "user.deleted"),
+                page.getItems().stream().map(ChangeDto::getAction).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(sessionId, sessionId, sessionId, sessionId, userId),
+                page.getItems().stream().map(ChangeDto::getEntityId).collect(Collectors.toList()));
+        assertEquals(userId, page.getItems().get(1).getUserId());
+        assertNull(page.getItems().get(0).getUserId());
+        assertEquals("user", page.getItems().get(4).getEntity());
+        assertNotNull(page.getItems().get(0).getChangedAt());
+        assertEquals(String.valueOf(page.getItems().get(4).getId()), page.getNextCursor());
+        assertFalse(page.isHasMore());
+    }
+
+    @Test
+    void findSince_shouldPage_andKeepTheCursorOnAnEmptyPage() {
+        createSession();
+        createSession();
+        createSession();
+
+        ChangePageDto first = changeFeedService.findSince(head, 2);
+        ChangePageDto second = changeFeedService.findSince(first.getNextCursor(), 2);
+        ChangePageDto empty = changeFeedService.findSince(second.getNextCursor(), 2);
+
+        assertEquals(2, first.getItems().size());
+        assertTrue(first.isHasMore());
+        assertEquals(1, second.getItems().size());
+        assertFalse(second.isHasMore());
+        assertTrue(empty.getItems().isEmpty());
+        assertEquals(second.getNextCursor(), empty.getNextCursor());
+    }
+
+    @Test
+    void rolledBackChanges_shouldNotBeLogged() {
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            createSession();
+            throw new IllegalStateException();
+        }));
+        Long sessionId = createSession();
+
+        List<ChangeDto> changes = changeFeedService.findSince(head, null).getItems();
+        assertEquals(1, changes.size());
+        assertEquals(sessionId, changes.get(0).getEntityId());
+    }
+
+    @Test
+    void ids_shouldFollowCommitOrder_notWriteOrder() throws Exception {
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Long> slow = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> {
+            Long id = createSession();
+            written.countDown();
+            await(release);
+            return id;
+        }));
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+        Long fast = createSession();
+        release.countDown();
+        Long late = slow.get(10, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList(fast, late), changeFeedService.findSince(head, null).getItems().stream()
+                .map(ChangeDto::getEntityId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void findSince_shouldHoldBackChanges_untilTheySettle() {
+        Long sessionId = createSession();
+
+        assertTrue(new ChangeFeedService(changeLogRepository, 3600).findSince(head, null).getItems().isEmpty());
+        assertEquals(sessionId, changeFeedService.findSince(head, null).getItems().get(0).getEntityId());
+    }
+
+    @Test
+    void append_shouldRequireATransaction() {
+        assertThrows(InvalidDataAccessApiUsageException.class, () -> changeLogRepository.append("session", 1L, "session.created", null));
+    }
+
+    @Test
+    void findSince_shouldRejectInvalidCursors() {
+        assertThrows(BadRequestException.class, () -> changeFeedService.findSince("abc", null));
+        assertThrows(BadRequestException.class, () -> changeFeedService.findSince("-1", null));
+        assertThrows(BadRequestException.class, () -> changeFeedService.findSince(null, 0));
+    }
+
+    private Long createSession() {
+        Session session = new Session();
+        session.setName("Feed");
+        session.setDescription("Class");
+        session.setDate(new Date());
+        return sessionService.create(session).getId();
+    }
+
+    private Long createUser() {
+        return userRepository.save(new User(UUID.randomUUID() + "@yoga.test", "Last", "First", "hash", false)).getId();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
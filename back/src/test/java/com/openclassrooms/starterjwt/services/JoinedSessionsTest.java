@@ -0,0 +1,113 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pages through a user's sessions on the embedded database, across sessions sharing a date.
+ */
+@SpringBootTest
+class JoinedSessionsTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long userId;
+
+    private Long otherUserId;
+
+    private final List<Long> sessionIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM WAITLIST");
+        jdbcTemplate.update("DELETE FROM PARTICIPATE");
+        jdbcTemplate.update("DELETE FROM SESSIONS");
+        jdbcTemplate.update("DELETE FROM USERS");
+
+        jdbcTemplate.update("INSERT INTO USERS (email, first_name, last_name, password, admin)"
+                + " VALUES ('me@yoga.test', 'First', 'Last', 'hash', false), ('other@yoga.test', 'First', 'Last', 'hash', false)");
+        userId = jdbcTemplate.queryForObject("SELECT id FROM USERS WHERE email = 'me@yoga.test'", Long.class);
+        otherUserId = jdbcTemplate.queryForObject("SELECT id FROM USERS WHERE email = 'other@yoga.test'", Long.class);
+
+        long now = System.currentTimeMillis();
+        // two past sessions, then three upcoming ones of which the last two share a date
+        long[] offsets = {-2 * HOUR, -HOUR, HOUR, 2 * HOUR, 2 * HOUR};
+        sessionIds.clear();
+        for (long offset : offsets) {
+            jdbcTemplate.update("INSERT INTO SESSIONS (name, description, date, seats_taken) VALUES ('Yoga', 'Class', ?, 2)",
+                    new Timestamp(now + offset));
+            sessionIds.add(jdbcTemplate.queryForObject("SELECT MAX(id) FROM SESSIONS", Long.class));
+        }
+        jdbcTemplate.update("INSERT INTO SESSIONS (name, description, date) VALUES ('Other', 'Class', ?)",
+                new Timestamp(now + HOUR));
+        Long notJoined = jdbcTemplate.queryForObject("SELECT MAX(id) FROM SESSIONS", Long.class);
+
+        for (Long sessionId : sessionIds) {
+            jdbcTemplate.update("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?), (?, ?)",
+                    sessionId, userId, sessionId, otherUserId);
+        }
+        jdbcTemplate.update("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", notJoined, otherUserId);
+    }
+
+    @Test
+    void findJoined_shouldListUpcomingSessionsSoonestFirst_acrossPages() {
+        Slice<Session> first = sessionService.findJoined(userId, false, null, 2);
+        Slice<Session> second = sessionService.findJoined(userId, false,
+                SessionCursor.of(first.getContent().get(1)), 2);
+
+        assertEquals(Arrays.asList(sessionIds.get(2), sessionIds.get(3)), ids(first));
+        assertTrue(first.hasNext());
+        assertEquals(Arrays.asList(sessionIds.get(4)), ids(second));
+        assertFalse(second.hasNext());
+    }
+
+    @Test
+    void findJoined_shouldListPastSessionsMostRecentFirst() {
+        Slice<Session> past = sessionService.findJoined(userId, true, null, 10);
+
+        assertEquals(Arrays.asList(sessionIds.get(1), sessionIds.get(0)), ids(past));
+        assertFalse(past.hasNext());
+        assertEquals(2, past.getContent().get(0).getSeatsTaken());
+    }
+
+    @Test
+    void findJoined_shouldRejectACursorIssuedForTheOtherDirection() {
+        Slice<Session> upcoming = sessionService.findJoined(userId, false, null, 1);
+        SessionCursor ascending = SessionCursor.of(upcoming.getContent().get(0));
+        SessionCursor descending = SessionCursor.of(upcoming.getContent().get(0), true);
+
+        assertThrows(BadRequestException.class, () -> sessionService.findJoined(userId, true, ascending, 1));
+        assertThrows(BadRequestException.class, () -> sessionService.findJoined(userId, false, descending, 1));
+        assertThrows(BadRequestException.class, () -> sessionService.findPage(descending, null, null, null, 1));
+    }
+
+    @Test
+    void findJoined_shouldOnlyReturnTheUsersSessions() {
+        assertEquals(4, sessionService.findJoined(otherUserId, false, null, 10).getContent().size());
+        assertEquals(3, sessionService.findJoined(userId, false, null, 10).getContent().size());
+    }
+
+    private static List<Long> ids(Slice<Session> slice) {
+        return slice.getContent().stream().map(Session::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,174 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.ParticipationBatchDto.Pair;
+import com.openclassrooms.starterjwt.dto.ParticipationBatchResultDto.Outcome;
+import com.openclassrooms.starterjwt.dto.ParticipationBatchResultDto.Result;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ParticipationBatchTest {
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        users.clear();
+        for (int i = 0; i < 5; i++) {
+            users.add(userRepository.save(new User(UUID.randomUUID() + "@yoga.test", "Last", "First", "hash", false)).getId());
+        }
+    }
+
+    @Test
+    void changeParticipants_shouldEnrollUpToCapacity_andSkipDuplicates() {
+        Long sessionId = createSession(2);
+        sessionService.participate(sessionId, users.get(0));
+
+        List<Result> results = sessionService.changeParticipants(Collections.emptyList(), Arrays.asList(
+                new Pair(sessionId, users.get(0)),
+                new Pair(sessionId, users.get(1)),
+                new Pair(sessionId, users.get(1)),
+                new Pair(sessionId, users.get(2))));
+
+        assertEquals(Arrays.asList(Outcome.ALREADY_PARTICIPATING, Outcome.ENROLLED, Outcome.ALREADY_PARTICIPATING,
+                Outcome.SESSION_FULL), outcomes(results));
+        assertEquals(Arrays.asList(users.get(0), users.get(1)), sessionService.findParticipantIds(sessionId));
+        assertEquals(2, seatsTaken(sessionId));
+        assertEquals(0, waitlistSize(sessionId));
+    }
+
+    @Test
+    void changeParticipants_shouldReportUnknownSessionsAndUsers() {
+        Long sessionId = createSession(null);
+
+        List<Result> results = sessionService.changeParticipants(
+                Collections.singletonList(new Pair(sessionId, users.get(0))),
+                Arrays.asList(new Pair(-1L, users.get(0)), new Pair(sessionId, -1L)));
+
+        assertEquals(Arrays.asList(Outcome.NOT_PARTICIPATING, Outcome.UNKNOWN_SESSION, Outcome.UNKNOWN_USER),
+                outcomes(results));
+        assertEquals(0, seatsTaken(sessionId));
+    }
+
+    @Test
+    void changeParticipants_shouldMoveAGroup_betweenFullSessions() {
+        Long from = createSession(3);
+        Long to = createSession(3);
+        sessionService.changeParticipants(Collections.emptyList(), Arrays.asList(
+                new Pair(from, users.get(0)), new Pair(from, users.get(1)), new Pair(from, users.get(2)),
+                new Pair(to, users.get(3)), new Pair(to, users.get(4))));
+        long revision = sessionService.getVersion(from).getRevision();
+
+        List<Result> results = sessionService.changeParticipants(
+                Collections.singletonList(new Pair(to, users.get(4))),
+                Arrays.asList(new Pair(to, users.get(0)), new Pair(to, users.get(1))));
+
+        assertEquals(Arrays.asList(Outcome.REMOVED, Outcome.ENROLLED, Outcome.ENROLLED), outcomes(results));
+        assertEquals(Arrays.asList(users.get(0), users.get(1), users.get(3)), sessionService.findParticipantIds(to));
+        assertEquals(3, seatsTaken(to));
+        assertEquals(revision, sessionService.getVersion(from).getRevision());
+
+        results = sessionService.changeParticipants(
+                Arrays.asList(new Pair(from, users.get(0)), new Pair(from, users.get(1))),
+                Collections.emptyList());
+
+        assertEquals(Arrays.asList(Outcome.REMOVED, Outcome.REMOVED), outcomes(results));
+        assertEquals(Collections.singletonList(users.get(2)), sessionService.findParticipantIds(from));
+        assertEquals(1, seatsTaken(from));
+        assertTrue(sessionService.getVersion(from).getRevision() > revision);
+    }
+
+    @Test
+    void changeParticipants_shouldHandFreedSeatsToTheWaitlist() {
+        Long sessionId = createSession(2);
+        for (Long userId : users) {
+            sessionService.participate(sessionId, userId);
+        }
+
+        List<Result> results = sessionService.changeParticipants(Arrays.asList(
+                new Pair(sessionId, users.get(0)),
+                new Pair(sessionId, users.get(1)),
+                new Pair(sessionId, users.get(2))), Collections.emptyList());
+
+        assertEquals(Arrays.asList(Outcome.REMOVED, Outcome.REMOVED, Outcome.REMOVED_FROM_WAITLIST), outcomes(results));
+        assertEquals(Arrays.asList(users.get(3), users.get(4)), sessionService.findParticipantIds(sessionId));
+        assertEquals(2, seatsTaken(sessionId));
+        assertEquals(0, waitlistSize(sessionId));
+    }
+
+    @Test
+    void changeParticipants_shouldTakeWaitlistedUsersOffTheWaitlist_whenEnrolled() {
+        Long sessionId = createSession(1);
+        sessionService.participate(sessionId, users.get(0));
+        sessionService.participate(sessionId, users.get(1));
+        jdbcTemplate.update("UPDATE SESSIONS SET capacity = 2 WHERE id = ?", sessionId);
+
+        List<Result> results = sessionService.changeParticipants(Collections.emptyList(),
+                Collections.singletonList(new Pair(sessionId, users.get(1))));
+
+        assertEquals(Collections.singletonList(Outcome.ENROLLED), outcomes(results));
+        assertEquals(0, waitlistSize(sessionId));
+        assertEquals(2, seatsTaken(sessionId));
+    }
+
+    @Test
+    void changeParticipants_shouldRejectOversizedBatches() {
+        List<Pair> pairs = Collections.nCopies(SessionService.MAX_BATCH_SIZE + 1, new Pair(1L, 1L));
+
+        assertThrows(BadRequestException.class,
+                () -> sessionService.changeParticipants(Collections.emptyList(), pairs));
+    }
+
+    @Test
+    void changeParticipants_shouldAcceptAnEmptyBatch() {
+        assertTrue(sessionService.changeParticipants(Collections.emptyList(), Collections.emptyList()).isEmpty());
+    }
+
+    private Long createSession(Integer capacity) {
+        Session session = new Session();
+        session.setName("Batch");
+        session.setDescription("Class");
+        session.setDate(new Date());
+        session.setCapacity(capacity);
+        return sessionService.create(session).getId();
+    }
+
+    private int seatsTaken(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT seats_taken FROM SESSIONS WHERE id = ?", Integer.class, sessionId);
+    }
+
+    private int waitlistSize(Long sessionId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM WAITLIST WHERE session_id = ?", Integer.class, sessionId);
+    }
+
+    private static List<Outcome> outcomes(List<Result> results) {
+        return results.stream().map(Result::getOutcome).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,49 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.models.Session;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionCursorTest {
+
+    @Test
+    void encodeThenDecode_shouldRoundTrip() {
+        Session session = new Session();
+        session.setId(42L);
+        session.setDate(new Date(1700000000000L));
+
+        SessionCursor decoded = SessionCursor.decode(SessionCursor.of(session).encode());
+
+        assertEquals(session.getDate(), decoded.getDate());
+        assertEquals(42L, decoded.getId());
+    }
+
+    @Test
+    void encodeThenDecode_shouldKeepTheDirection() {
+        Session session = new Session();
+        session.setId(42L);
+        session.setDate(new Date(1700000000000L));
+
+        assertFalse(SessionCursor.decode(SessionCursor.of(session).encode()).isDescending());
+        assertTrue(SessionCursor.decode(SessionCursor.of(session, true).encode()).isDescending());
+    }
+
+    @Test
+    void decode_shouldReturnNull_whenTokenMissing() {
+        assertNull(SessionCursor.decode(null));
+        assertNull(SessionCursor.decode(""));
+    }
+
+    @Test
+    void decode_shouldThrowBadRequest_whenTokenInvalid() {
+        assertThrows(BadRequestException.class, () -> SessionCursor.decode("%%%"));
+        assertThrows(BadRequestException.class, () -> SessionCursor.decode("bm8tc2VwYXJhdG9y"));
+        assertThrows(BadRequestException.class, () -> SessionCursor.decode("YWJjOmRlZg"));
+        // "1:2:up"
+        assertThrows(BadRequestException.class, () -> SessionCursor.decode("MToyOnVw"));
+    }
+}
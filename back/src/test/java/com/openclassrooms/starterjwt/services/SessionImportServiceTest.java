@@ -0,0 +1,216 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionImportReportDto;
+import com.openclassrooms.starterjwt.events.SessionChangedEvent;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.logging.SessionAuditLog;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.Validation;
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SessionImportServiceTest {
+
+    @Mock
+    private SessionRepository sessionRepository;
+
+    @Mock
+    private TeacherRepository teacherRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private SessionAuditLog auditLog;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private SessionImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        importService = new SessionImportService(sessionRepository, teacherRepository, userRepository,
+                Validation.buildDefaultValidatorFactory().getValidator(), transactionTemplate, auditLog,
+                new SimpleMeterRegistry(), eventPublisher, 5, 2);
+    }
+
+    @Test
+    void importSessions_shouldInsertInChunks_withOneLookupPerEntityType() {
+        givenTeacher(1L);
+        givenUsers(10L, 11L);
+        givenTransactions();
+        AtomicLong ids = new AtomicLong(100);
+        doAnswer(invocation -> {
+            List<Session> sessions = invocation.getArgument(0);
+            sessions.forEach(session -> session.setId(ids.incrementAndGet()));
+            return null;
+        }).when(sessionRepository).insertAll(anyList());
+
+        SessionImportReportDto report = importService.importSessions(Arrays.asList(
+                row("A", 1L, 10L, 11L), row("B", 1L, 10L), row("C", 1L)));
+
+        assertEquals(3, report.getImported());
+        assertEquals(0, report.getFailed());
+        assertEquals(Arrays.asList(101L, 102L, 103L), ids(report));
+        verify(sessionRepository, times(2)).insertAll(anyList());
+        verify(teacherRepository).findAllById(any());
+        verify(userRepository).findAllById(any());
+        verify(auditLog, times(3)).record(eq(SessionAuditLog.CREATED), anyLong());
+        verify(eventPublisher, times(3)).publishEvent(any(SessionChangedEvent.class));
+    }
+
+    @Test
+    void importSessions_shouldRejectEverything_whenOneRowIsInvalid() {
+        givenTeacher(1L);
+        givenUsers(10L);
+        SessionDto overbooked = row("B", 1L, 10L, 12L);
+        overbooked.setCapacity(1);
+
+        SessionImportReportDto report = importService.importSessions(Arrays.asList(
+                row("A", 1L, 10L), overbooked, row("", 2L)));
+
+        assertEquals(0, report.getImported());
+        assertEquals(SessionImportReportDto.Status.SKIPPED, report.getRows().get(0).getStatus());
+        assertEquals(SessionImportReportDto.Status.INVALID, report.getRows().get(1).getStatus());
+        assertEquals(Arrays.asList("Unknown user ids: [12]", "Participants exceed session capacity"),
+                report.getRows().get(1).getErrors());
+        assertEquals(Arrays.asList("name must not be blank", "Unknown teacher id: 2"),
+                report.getRows().get(2).getErrors());
+        verify(sessionRepository, never()).insertAll(anyList());
+    }
+
+    @Test
+    void importSessions_shouldReportFailedChunk_andKeepGoing() {
+        givenTeacher(1L);
+        givenTransactions();
+        AtomicLong ids = new AtomicLong();
+        doThrow(new DataIntegrityViolationException("boom"))
+                .doAnswer(invocation -> {
+                    List<Session> sessions = invocation.getArgument(0);
+                    sessions.forEach(session -> session.setId(ids.incrementAndGet()));
+                    return null;
+                })
+                .when(sessionRepository).insertAll(anyList());
+
+        SessionImportReportDto report = importService.importSessions(Arrays.asList(
+                row("A", 1L), row("B", 1L), row("C", 1L)));
+
+        assertEquals(1, report.getImported());
+        assertEquals(2, report.getFailed());
+        assertEquals(SessionImportReportDto.Status.FAILED, report.getRows().get(0).getStatus());
+        assertEquals(SessionImportReportDto.Status.FAILED, report.getRows().get(1).getStatus());
+        assertEquals(SessionImportReportDto.Status.IMPORTED, report.getRows().get(2).getStatus());
+        assertEquals(1L, report.getRows().get(2).getId());
+    }
+
+    @Test
+    void importSessions_shouldRejectTooManyRows() {
+        List<SessionDto> rows = Collections.nCopies(6, row("A", 1L));
+
+        assertThrows(BadRequestException.class, () -> importService.importSessions(rows));
+    }
+
+    @Test
+    void readCsv_shouldMapColumnsByHeader_andIgnoreOthers() throws Exception {
+        String csv = "id,teacher_id,name,date,description,capacity,users\r\n"
+                + "7,1,Yoga,2030-01-01T09:00:00Z,\"Slow, \"\"gentle\"\"\nflow\",10,10;11\r\n"
+                + "\r\n"
+                + "8,2,Pilates,2030-01-02T09:00:00Z,Core,,\r\n";
+
+        List<SessionDto> rows = importService.readCsv(new StringReader(csv));
+
+        assertEquals(2, rows.size());
+        assertEquals("Yoga", rows.get(0).getName());
+        assertEquals("Slow, \"gentle\"\nflow", rows.get(0).getDescription());
+        assertEquals(Date.from(Instant.parse("2030-01-01T09:00:00Z")), rows.get(0).getDate());
+        assertEquals(1L, rows.get(0).getTeacher_id());
+        assertEquals(10, rows.get(0).getCapacity());
+        assertEquals(Arrays.asList(10L, 11L), rows.get(0).getUsers());
+        assertNull(rows.get(1).getCapacity());
+        assertEquals(Collections.emptyList(), rows.get(1).getUsers());
+        assertNull(rows.get(1).getId());
+    }
+
+    @Test
+    void readCsv_shouldNameTheLine_ofAnUnreadableValue() {
+        String csv = "name,date,description,teacher_id\nYoga,2030-01-01T09:00:00Z,Flow,1\nYoga,tomorrow,Flow,1\n";
+
+        BadRequestException e = assertThrows(BadRequestException.class, () -> importService.readCsv(new StringReader(csv)));
+        assertTrue(e.getMessage().startsWith("Line 3:"), e.getMessage());
+    }
+
+    @Test
+    void readCsv_shouldRequireTheMandatoryColumns() {
+        assertThrows(BadRequestException.class, () -> importService.readCsv(new StringReader("name,date\nYoga,2030-01-01T09:00:00Z\n")));
+    }
+
+    private void givenTeacher(Long id) {
+        when(teacherRepository.findAllById(any())).thenReturn(Collections.singletonList(new Teacher().setId(id)));
+    }
+
+    private void givenUsers(Long... ids) {
+        List<User> users = new ArrayList<>();
+        for (Long id : ids) {
+            User user = new User();
+            user.setId(id);
+            users.add(user);
+        }
+        when(userRepository.findAllById(any())).thenReturn(users);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenTransactions() {
+        doAnswer(invocation -> {
+            ((Consumer<Object>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    private static SessionDto row(String name, Long teacherId, Long... userIds) {
+        SessionDto row = new SessionDto();
+        row.setName(name);
+        row.setDescription("Class");
+        row.setDate(new Date());
+        row.setTeacher_id(teacherId);
+        row.setUsers(Arrays.asList(userIds));
+        return row;
+    }
+
+    private static List<Long> ids(SessionImportReportDto report) {
+        List<Long> ids = new ArrayList<>();
+        report.getRows().forEach(row -> ids.add(row.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,252 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.ParticipationBatchDto;
+import com.openclassrooms.starterjwt.dto.ParticipationBatchResultDto;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fires many parallel joins and cancellations against one hot session on the embedded
+ * database and checks that the seat counter, the roster and the waitlist stay consistent.
+ */
+@SpringBootTest
+class SessionServiceConcurrencyTest {
+
+    private static final int USERS = 2000;
+    private static final int CAPACITY = 50;
+    private static final int THREADS = 64;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> userIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM WAITLIST");
+        jdbcTemplate.update("DELETE FROM PARTICIPATE");
+        jdbcTemplate.update("DELETE FROM SESSIONS");
+        jdbcTemplate.update("DELETE FROM USERS");
+
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            rows.add(new Object[]{"user" + i + "@yoga.test", "First", "Last", "hash"});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO USERS (email, first_name, last_name, password, admin) VALUES (?, ?, ?, ?, false)", rows);
+
+        userIds.clear();
+        userIds.addAll(jdbcTemplate.queryForList("SELECT id FROM USERS ORDER BY id", Long.class));
+    }
+
+    @Test
+    void participate_shouldNeverOverbook_underParallelJoins() throws Exception {
+        Long sessionId = createSession(CAPACITY);
+        AtomicInteger joined = new AtomicInteger();
+        AtomicInteger waitlisted = new AtomicInteger();
+
+        List<Callable<Void>> joins = new ArrayList<>();
+        for (Long userId : userIds) {
+            joins.add(() -> {
+                if (sessionService.participate(sessionId, userId) == ParticipationStatus.PARTICIPATING) {
+                    joined.incrementAndGet();
+                } else {
+                    waitlisted.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        runAll(joins);
+
+        assertEquals(CAPACITY, joined.get());
+        assertEquals(USERS - CAPACITY, waitlisted.get());
+        assertEquals(CAPACITY, participantCount(sessionId));
+        assertEquals(CAPACITY, seatsTaken(sessionId));
+        assertEquals(USERS - CAPACITY, waitlistSize(sessionId));
+    }
+
+    @Test
+    void noLongerParticipate_shouldPromoteInOrder_underMassCancellation() throws Exception {
+        Long sessionId = createSession(CAPACITY);
+        for (Long userId : userIds.subList(0, CAPACITY * 3)) {
+            sessionService.participate(sessionId, userId);
+        }
+
+        List<Callable<Void>> cancellations = new ArrayList<>();
+        for (Long userId : userIds.subList(0, CAPACITY)) {
+            cancellations.add(() -> {
+                sessionService.noLongerParticipate(sessionId, userId);
+                return null;
+            });
+        }
+        runAll(cancellations);
+
+        assertEquals(new HashSet<>(userIds.subList(CAPACITY, CAPACITY * 2)),
+                new HashSet<>(jdbcTemplate.queryForList(
+                        "SELECT user_id FROM PARTICIPATE WHERE session_id = ?", Long.class, sessionId)));
+        assertEquals(CAPACITY, seatsTaken(sessionId));
+        assertEquals(CAPACITY, waitlistSize(sessionId));
+    }
+
+    @Test
+    void revision_shouldMoveWithTheRoster_butNotWithTheWaitlist() {
+        Long sessionId = createSession(1);
+        long created = sessionService.getVersion(sessionId).getRevision();
+
+        sessionService.participate(sessionId, userIds.get(0));
+        long joined = sessionService.getVersion(sessionId).getRevision();
+        assertTrue(joined > created);
+
+        sessionService.participate(sessionId, userIds.get(1));
+        assertEquals(joined, sessionService.getVersion(sessionId).getRevision());
+
+        sessionService.noLongerParticipate(sessionId, userIds.get(0));
+        assertTrue(sessionService.getVersion(sessionId).getRevision() > joined);
+    }
+
+    @Test
+    void seatCounter_shouldMatchRoster_underParallelJoinsAndLeaves() throws Exception {
+        Long sessionId = createSession(CAPACITY);
+        List<Long> firstWave = userIds.subList(0, CAPACITY);
+        for (Long userId : firstWave) {
+            sessionService.participate(sessionId, userId);
+        }
+
+        List<Callable<Void>> operations = new ArrayList<>();
+        for (Long userId : firstWave) {
+            operations.add(() -> {
+                sessionService.noLongerParticipate(sessionId, userId);
+                return null;
+            });
+        }
+        for (Long userId : userIds.subList(CAPACITY, USERS / 2)) {
+            operations.add(() -> {
+                sessionService.participate(sessionId, userId);
+                return null;
+            });
+        }
+        runAll(operations);
+
+        int participants = participantCount(sessionId);
+        assertEquals(participants, seatsTaken(sessionId));
+        assertTrue(participants <= CAPACITY);
+        assertTrue(waitlistSize(sessionId) == 0 || participants == CAPACITY);
+    }
+
+    @Test
+    void changeParticipants_shouldNeverOverbook_underParallelBatchesAndJoins() throws Exception {
+        Long sessionId = createSession(CAPACITY);
+        AtomicInteger enrolled = new AtomicInteger();
+
+        List<Callable<Void>> operations = new ArrayList<>();
+        for (int from = 0; from < USERS / 2; from += 25) {
+            List<ParticipationBatchDto.Pair> batch = new ArrayList<>();
+            for (Long userId : userIds.subList(from, from + 25)) {
+                batch.add(new ParticipationBatchDto.Pair(sessionId, userId));
+            }
+            operations.add(() -> {
+                enrolled.addAndGet((int) sessionService.changeParticipants(Collections.emptyList(), batch).stream()
+                        .filter(result -> result.getOutcome() == ParticipationBatchResultDto.Outcome.ENROLLED)
+                        .count());
+                return null;
+            });
+        }
+        for (Long userId : userIds.subList(USERS / 2, USERS / 2 + 100)) {
+            operations.add(() -> {
+                sessionService.participate(sessionId, userId);
+                return null;
+            });
+        }
+        runAll(operations);
+
+        assertEquals(CAPACITY, participantCount(sessionId));
+        assertEquals(CAPACITY, seatsTaken(sessionId));
+        assertTrue(enrolled.get() <= CAPACITY);
+    }
+
+    @Test
+    void update_shouldHandFreedSeatsToTheWaitlist() {
+        Long sessionId = createSession(2);
+        for (Long userId : userIds.subList(0, 5)) {
+            sessionService.participate(sessionId, userId);
+        }
+
+        Session edited = sessionRepository.findById(sessionId).get();
+        Session update = new Session()
+                .setName(edited.getName())
+                .setDescription(edited.getDescription())
+                .setDate(edited.getDate())
+                .setCapacity(4)
+                .setUsers(new ArrayList<>(Collections.singletonList(
+                        new User().setId(userIds.get(4)))));
+        sessionService.update(sessionId, update);
+
+        assertEquals(new HashSet<>(userIds.subList(2, 5)), new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT user_id FROM PARTICIPATE WHERE session_id = ?", Long.class, sessionId)));
+        assertEquals(3, seatsTaken(sessionId));
+        assertEquals(0, waitlistSize(sessionId));
+    }
+
+    private Long createSession(int capacity) {
+        Session session = new Session();
+        session.setName("Hot session");
+        session.setDescription("Opens at 8");
+        session.setDate(new Date());
+        session.setCapacity(capacity);
+        return sessionService.create(session).getId();
+    }
+
+    private int participantCount(Long sessionId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = ?", Integer.class, sessionId);
+    }
+
+    private int waitlistSize(Long sessionId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM WAITLIST WHERE session_id = ?", Integer.class, sessionId);
+    }
+
+    private int seatsTaken(Long sessionId) {
+        return sessionRepository.findById(sessionId).map(Session::getSeatsTaken).orElse(-1);
+    }
+
+    private static void runAll(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = executor.invokeAll(tasks);
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+}
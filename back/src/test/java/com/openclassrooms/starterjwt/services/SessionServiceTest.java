@@ -1,22 +1,39 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.events.SessionChangedEvent;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.logging.SessionAuditLog;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.models.WaitlistEntry;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -31,20 +48,28 @@ class SessionServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private WaitlistRepository waitlistRepository;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private SessionAuditLog auditLog;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private SessionService sessionService;
 
     private Session session;
-    private User user;
 
     @BeforeEach
     void setUp() {
         session = new Session();
         session.setId(1L);
         session.setUsers(new ArrayList<>());
-
-        user = new User();
-        user.setId(10L);
     }
 
     @Test
@@ -55,13 +80,32 @@ class SessionServiceTest {
 
         assertSame(session, result);
         verify(sessionRepository).save(session);
+        verify(sessionRepository).syncSeatsTaken(1L);
+    }
+
+    @Test
+    void create_shouldThrowBadRequest_whenParticipantsExceedCapacity() {
+        session.setCapacity(1);
+        session.getUsers().add(new User());
+        session.getUsers().add(new User());
+
+        assertThrows(BadRequestException.class, () -> sessionService.create(session));
+
+        verify(sessionRepository, never()).save(any());
     }
 
     @Test
     void delete_shouldDeleteById() {
         sessionService.delete(1L);
+        verify(waitlistRepository).deleteBySession(1L);
         verify(sessionRepository).deleteById(1L);
         verifyNoMoreInteractions(sessionRepository);
+        verify(auditLog).record(SessionAuditLog.DELETED, 1L);
+
+        ArgumentCaptor<SessionChangedEvent> event = ArgumentCaptor.forClass(SessionChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(SessionChangedEvent.Type.DELETED, event.getValue().getType());
+        assertEquals(1L, event.getValue().getSessionId());
     }
 
     @Test
@@ -75,6 +119,78 @@ class SessionServiceTest {
         verify(sessionRepository).findAll();
     }
 
+    @Test
+    void findPage_shouldUseDefaultSize_andNoCursor() {
+        Slice<Session> slice = new SliceImpl<>(Arrays.asList(session));
+        when(sessionRepository.findPage(null, null, null, null, null, PageRequest.of(0, SessionService.DEFAULT_PAGE_SIZE)))
+                .thenReturn(slice);
+
+        Slice<Session> result = sessionService.findPage(null, null, null, null, null);
+
+        assertSame(slice, result);
+    }
+
+    @Test
+    void findPage_shouldPassCursorAndFilters_andCapSize() {
+        Date from = new Date(1000L);
+        Date to = new Date(5000L);
+        SessionCursor cursor = new SessionCursor(new Date(2000L), 7L);
+
+        sessionService.findPage(cursor, from, to, 3L, 10_000);
+
+        ArgumentCaptor<Pageable> captor = ArgumentCaptor.forClass(Pageable.class);
+        verify(sessionRepository).findPage(eq(3L), eq(from), eq(to), eq(cursor.getDate()), eq(7L), captor.capture());
+        assertEquals(SessionService.MAX_PAGE_SIZE, captor.getValue().getPageSize());
+    }
+
+    @Test
+    void findPage_shouldThrowBadRequest_whenSizeNotPositive() {
+        assertThrows(BadRequestException.class, () -> sessionService.findPage(null, null, null, null, 0));
+    }
+
+    @Test
+    void findParticipantIds_shouldGroupParticipantsBySession() {
+        List<SessionRepository.Participant> participants = Arrays.asList(
+                participant(1L, 10L), participant(1L, 11L), participant(2L, 12L));
+        when(sessionRepository.findParticipants(Arrays.asList(1L, 2L))).thenReturn(participants);
+
+        Map<Long, List<Long>> result = sessionService.findParticipantIds(Arrays.asList(1L, 2L));
+
+        assertEquals(Arrays.asList(10L, 11L), result.get(1L));
+        assertEquals(Collections.singletonList(12L), result.get(2L));
+    }
+
+    @Test
+    void findParticipantIds_shouldReturnEmptyList_whenSessionHasNoParticipant() {
+        when(sessionRepository.findParticipants(Collections.singletonList(1L))).thenReturn(Collections.emptyList());
+
+        assertTrue(sessionService.findParticipantIds(1L).isEmpty());
+    }
+
+    @Test
+    void findParticipantIds_shouldNotQuery_whenNoSession() {
+        assertTrue(sessionService.findParticipantIds(Collections.emptyList()).isEmpty());
+        verifyNoInteractions(sessionRepository);
+    }
+
+    @Test
+    void countParticipants_shouldMapCountsBySession() {
+        SessionRepository.ParticipantCount count = mock(SessionRepository.ParticipantCount.class);
+        when(count.getSessionId()).thenReturn(1L);
+        when(count.getParticipants()).thenReturn(3L);
+        when(sessionRepository.countParticipants(Collections.singletonList(1L))).thenReturn(Collections.singletonList(count));
+
+        Map<Long, Long> result = sessionService.countParticipants(Collections.singletonList(1L));
+
+        assertEquals(3L, result.get(1L));
+    }
+
+    @Test
+    void countParticipants_shouldNotQuery_whenNoSession() {
+        assertTrue(sessionService.countParticipants(Collections.emptyList()).isEmpty());
+        verifyNoInteractions(sessionRepository);
+    }
+
     @Test
     void getById_shouldReturnSession_whenFound() {
         when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
@@ -112,80 +228,252 @@ class SessionServiceTest {
         ArgumentCaptor<Session> captor = ArgumentCaptor.forClass(Session.class);
         verify(sessionRepository).save(captor.capture());
         assertEquals(1L, captor.getValue().getId());
+        verify(sessionRepository).syncSeatsTaken(1L);
+        verify(auditLog).record(SessionAuditLog.UPDATED, 1L, null, Collections.emptyList());
     }
 
     @Test
-    void participate_shouldAddUserAndSave_whenNotAlreadyParticipating() {
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
-        when(userRepository.findById(10L)).thenReturn(Optional.of(user));
+    void update_shouldPromoteFromWaitlist_whileSeatsAreFree() {
+        Session toUpdate = new Session().setCapacity(3).setUsers(new ArrayList<>());
+        when(sessionRepository.save(any(Session.class))).thenReturn(toUpdate);
+        when(waitlistRepository.existsBySessionId(1L)).thenReturn(true);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1, 1, 1, 0);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L)).thenReturn(
+                Optional.of(WaitlistEntry.builder().id(5L).sessionId(1L).userId(20L).build()),
+                Optional.of(WaitlistEntry.builder().id(6L).sessionId(1L).userId(21L).build()),
+                Optional.empty());
+        when(waitlistRepository.deleteEntry(anyLong())).thenReturn(1);
+
+        sessionService.update(1L, toUpdate);
+
+        verify(sessionRepository).addParticipant(1L, 20L);
+        verify(sessionRepository).addParticipant(1L, 21L);
+        verify(sessionRepository, times(1)).releaseSeat(1L);
+    }
+
+    @Test
+    void update_shouldDropWaitlistEntries_ofUsersAddedThroughTheRoster() {
+        Session toUpdate = new Session().setUsers(new ArrayList<>(Arrays.asList(new User().setId(10L), new User().setId(11L))));
+        when(sessionRepository.save(any(Session.class))).thenReturn(toUpdate);
 
-        sessionService.participate(1L, 10L);
+        sessionService.update(1L, toUpdate);
 
-        assertEquals(1, session.getUsers().size());
-        assertEquals(10L, session.getUsers().get(0).getId());
+        verify(waitlistRepository).deleteEntries(1L, Arrays.asList(10L, 11L));
+        verify(sessionRepository, never()).reserveSeat(anyLong());
+    }
 
-        verify(sessionRepository).save(session);
+    @Test
+    void update_shouldAuditChangedFieldNamesOnly() {
+        User participant = new User().setId(10L);
+        Session existing = new Session()
+                .setId(1L)
+                .setName("Yoga")
+                .setDescription("Morning class")
+                .setDate(new java.sql.Timestamp(1_000L))
+                .setCapacity(10)
+                .setTeacher(new Teacher().setId(2L))
+                .setUsers(new ArrayList<>(Collections.singletonList(participant)));
+        Session toUpdate = new Session()
+                .setName("Yoga")
+                .setDescription("Evening class")
+                .setDate(new Date(1_000L))
+                .setCapacity(12)
+                .setTeacher(new Teacher().setId(2L))
+                .setUsers(new ArrayList<>(Collections.singletonList(new User().setId(10L))));
+
+        when(sessionRepository.findById(1L)).thenReturn(Optional.of(existing));
+        when(sessionRepository.save(any(Session.class))).thenReturn(toUpdate);
+
+        sessionService.update(1L, toUpdate);
+
+        verify(auditLog).record(SessionAuditLog.UPDATED, 1L, null, Arrays.asList("description", "capacity"));
+    }
+
+    @Test
+    void participate_shouldInsertSingleRow_whenNotAlreadyParticipating() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(10L)).thenReturn(true);
+        when(sessionRepository.countParticipant(1L, 10L)).thenReturn(0L);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+
+        assertEquals(ParticipationStatus.PARTICIPATING, sessionService.participate(1L, 10L));
+
+        verify(sessionRepository).addParticipant(1L, 10L);
+        assertEquals(1.0, meterRegistry.counter("sessions.participation.joins", "status", "participating").count());
+        verify(auditLog).record(SessionAuditLog.JOINED, 1L, 10L);
+        verify(sessionRepository, never()).findById(any());
+        verify(sessionRepository, never()).save(any());
     }
 
     @Test
     void participate_shouldThrowNotFound_whenSessionNotFound() {
-        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
-        when(userRepository.findById(10L)).thenReturn(Optional.of(user));
+        when(sessionRepository.existsById(1L)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(1L, 10L));
 
-        verify(sessionRepository, never()).save(any());
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
     }
 
     @Test
     void participate_shouldThrowNotFound_whenUserNotFound() {
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
-        when(userRepository.findById(10L)).thenReturn(Optional.empty());
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(10L)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(1L, 10L));
 
-        verify(sessionRepository, never()).save(any());
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
     }
 
     @Test
     void participate_shouldThrowBadRequest_whenAlreadyParticipating() {
-        session.getUsers().add(user);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(10L)).thenReturn(true);
+        when(sessionRepository.countParticipant(1L, 10L)).thenReturn(1L);
 
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
-        when(userRepository.findById(10L)).thenReturn(Optional.of(user));
+        assertThrows(BadRequestException.class, () -> sessionService.participate(1L, 10L));
+
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
+    }
+
+    @Test
+    void participate_shouldThrowBadRequest_whenConcurrentJoinHitsUniqueConstraint() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(10L)).thenReturn(true);
+        when(sessionRepository.countParticipant(1L, 10L)).thenReturn(0L);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 10L)).thenThrow(new DataIntegrityViolationException("duplicate"));
 
         assertThrows(BadRequestException.class, () -> sessionService.participate(1L, 10L));
+    }
 
-        verify(sessionRepository, never()).save(any());
+    @Test
+    void participate_shouldThrowBadRequest_whenAlreadyWaitlisted() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(10L)).thenReturn(true);
+        when(sessionRepository.countParticipant(1L, 10L)).thenReturn(0L);
+        when(waitlistRepository.existsBySessionIdAndUserId(1L, 10L)).thenReturn(true);
+
+        assertThrows(BadRequestException.class, () -> sessionService.participate(1L, 10L));
+
+        verify(sessionRepository, never()).reserveSeat(anyLong());
     }
 
     @Test
-    void noLongerParticipate_shouldRemoveUserAndSave_whenParticipating() {
-        session.getUsers().add(user);
+    void participate_shouldWaitlist_whenSessionFull() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(10L)).thenReturn(true);
+        when(sessionRepository.countParticipant(1L, 10L)).thenReturn(0L);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(0);
+        when(waitlistRepository.save(any(WaitlistEntry.class))).thenAnswer(invocation ->
+                invocation.getArgument(0, WaitlistEntry.class).setId(5L));
+        when(waitlistRepository.existsById(5L)).thenReturn(true);
+
+        assertEquals(ParticipationStatus.WAITLISTED, sessionService.participate(1L, 10L));
+        assertEquals(1.0, meterRegistry.counter("sessions.participation.joins", "status", "waitlisted").count());
+        verify(auditLog).record(SessionAuditLog.WAITLISTED, 1L, 10L);
+
+        ArgumentCaptor<WaitlistEntry> captor = ArgumentCaptor.forClass(WaitlistEntry.class);
+        verify(waitlistRepository).save(captor.capture());
+        assertEquals(1L, captor.getValue().getSessionId());
+        assertEquals(10L, captor.getValue().getUserId());
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
+    }
 
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
+    @Test
+    void participate_shouldPromoteWaitlistHead_whenSeatFreedWhileQueuing() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(10L)).thenReturn(true);
+        when(sessionRepository.countParticipant(1L, 10L)).thenReturn(0L);
+        when(sessionRepository.reserveSeat(1L)).thenReturn(0, 1);
+        when(waitlistRepository.save(any(WaitlistEntry.class))).thenAnswer(invocation ->
+                invocation.getArgument(0, WaitlistEntry.class).setId(5L));
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L))
+                .thenReturn(Optional.of(WaitlistEntry.builder().id(5L).sessionId(1L).userId(10L).build()));
+        when(waitlistRepository.deleteEntry(5L)).thenReturn(1);
+        when(waitlistRepository.existsById(5L)).thenReturn(false);
+
+        assertEquals(ParticipationStatus.PARTICIPATING, sessionService.participate(1L, 10L));
+
+        verify(sessionRepository).addParticipant(1L, 10L);
+        verify(sessionRepository, never()).releaseSeat(anyLong());
+    }
+
+    @Test
+    void noLongerParticipate_shouldDeleteSingleRow_whenParticipating() {
+        when(sessionRepository.removeParticipant(1L, 10L)).thenReturn(1);
 
         sessionService.noLongerParticipate(1L, 10L);
 
-        assertTrue(session.getUsers().isEmpty());
-        verify(sessionRepository).save(session);
+        verify(sessionRepository).removeParticipant(1L, 10L);
+        verify(sessionRepository).evictRoster(1L);
+        verify(sessionRepository).releaseSeat(1L);
+        verifyNoMoreInteractions(sessionRepository);
+    }
+
+    @Test
+    void noLongerParticipate_shouldPromoteWaitlistHead_insteadOfReleasingSeat() {
+        when(sessionRepository.removeParticipant(1L, 10L)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L))
+                .thenReturn(Optional.of(WaitlistEntry.builder().id(5L).sessionId(1L).userId(20L).build()));
+        when(waitlistRepository.deleteEntry(5L)).thenReturn(1);
+
+        sessionService.noLongerParticipate(1L, 10L);
+
+        verify(sessionRepository).addParticipant(1L, 20L);
+        verify(sessionRepository, never()).releaseSeat(anyLong());
+        assertEquals(1.0, meterRegistry.counter("sessions.participation.leaves", "from", "roster").count());
+        assertEquals(1.0, meterRegistry.counter("sessions.waitlist.promotions").count());
+    }
+
+    @Test
+    void noLongerParticipate_shouldRetryPromotion_whenHeadAlreadyClaimed() {
+        when(sessionRepository.removeParticipant(1L, 10L)).thenReturn(1);
+        when(waitlistRepository.findFirstBySessionIdOrderByIdAsc(1L)).thenReturn(
+                Optional.of(WaitlistEntry.builder().id(5L).sessionId(1L).userId(20L).build()),
+                Optional.of(WaitlistEntry.builder().id(6L).sessionId(1L).userId(30L).build()));
+        when(waitlistRepository.deleteEntry(5L)).thenReturn(0);
+        when(waitlistRepository.deleteEntry(6L)).thenReturn(1);
+
+        sessionService.noLongerParticipate(1L, 10L);
+
+        verify(sessionRepository).addParticipant(1L, 30L);
+        verify(sessionRepository, never()).addParticipant(1L, 20L);
+        verify(sessionRepository, never()).releaseSeat(anyLong());
+    }
+
+    @Test
+    void noLongerParticipate_shouldLeaveWaitlist_whenOnlyWaitlisted() {
+        when(sessionRepository.removeParticipant(1L, 10L)).thenReturn(0);
+        when(waitlistRepository.deleteEntry(1L, 10L)).thenReturn(1);
+
+        sessionService.noLongerParticipate(1L, 10L);
+
+        verify(sessionRepository, never()).releaseSeat(anyLong());
+        verify(sessionRepository, never()).existsById(anyLong());
     }
 
     @Test
     void noLongerParticipate_shouldThrowNotFound_whenSessionNotFound() {
-        when(sessionRepository.findById(1L)).thenReturn(Optional.empty());
+        when(sessionRepository.removeParticipant(1L, 10L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.noLongerParticipate(1L, 10L));
-
-        verify(sessionRepository, never()).save(any());
     }
 
     @Test
     void noLongerParticipate_shouldThrowBadRequest_whenUserNotParticipating() {
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(session));
+        when(sessionRepository.removeParticipant(1L, 10L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
 
         assertThrows(BadRequestException.class, () -> sessionService.noLongerParticipate(1L, 10L));
 
-        verify(sessionRepository, never()).save(any());
+        verify(sessionRepository, never()).releaseSeat(anyLong());
+    }
+
+    private static SessionRepository.Participant participant(Long sessionId, Long userId) {
+        SessionRepository.Participant participant = mock(SessionRepository.Participant.class);
+        when(participant.getSessionId()).thenReturn(sessionId);
+        when(participant.getUserId()).thenReturn(userId);
+        return participant;
     }
 }
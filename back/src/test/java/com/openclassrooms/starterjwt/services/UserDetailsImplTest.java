@@ -38,6 +38,16 @@ class UserDetailsImplTest {
         assertTrue(user.isEnabled());
     }
 
+    @Test
+    void getAuthorities_shouldGrantAdminRole_toAdminsOnly() {
+        UserDetailsImpl admin = UserDetailsImpl.builder().id(1L).admin(true).build();
+        UserDetailsImpl unknown = UserDetailsImpl.builder().id(2L).build();
+
+        assertEquals(1, admin.getAuthorities().size());
+        assertEquals("ROLE_ADMIN", admin.getAuthorities().iterator().next().getAuthority());
+        assertTrue(unknown.getAuthorities().isEmpty());
+    }
+
     @Test
     void equals_shouldReturnTrue_whenSameId() {
         UserDetailsImpl u1 = UserDetailsImpl.builder().id(1L).build();
@@ -35,6 +35,7 @@ class UserDetailsServiceImplTest {
         user.setFirstName("John");
         user.setLastName("Doe");
         user.setPassword("hashed");
+        user.setAdmin(true);
 
         when(userRepository.findByEmail("john@doe.com")).thenReturn(Optional.of(user));
 
@@ -49,6 +50,7 @@ class UserDetailsServiceImplTest {
         assertEquals("John", impl.getFirstName());
         assertEquals("Doe", impl.getLastName());
         assertEquals("hashed", impl.getPassword());
+        assertTrue(impl.getAdmin());
     }
 
     @Test
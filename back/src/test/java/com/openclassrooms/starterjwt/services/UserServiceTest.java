@@ -1,13 +1,20 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.events.UserDeletedEvent;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.repository.WaitlistRepository;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -19,6 +26,15 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private WaitlistRepository waitlistRepository;
+
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private UserService userService;
 
@@ -26,8 +42,14 @@ class UserServiceTest {
     void delete_shouldCallRepositoryDeleteById() {
         userService.delete(1L);
 
+        verify(waitlistRepository).deleteByUser(1L);
         verify(userRepository).deleteById(1L);
+        verify(userDetailsCache).evict(1L);
         verifyNoMoreInteractions(userRepository);
+
+        ArgumentCaptor<UserDeletedEvent> event = ArgumentCaptor.forClass(UserDeletedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(1L, event.getValue().getUserId());
     }
 
     @Test
@@ -53,4 +75,20 @@ class UserServiceTest {
         assertNull(result);
         verify(userRepository).findById(1L);
     }
+
+    @Test
+    void findAllById_shouldReturnUsersFromSingleLookup() {
+        User u1 = new User();
+        u1.setId(1L);
+        User u2 = new User();
+        u2.setId(2L);
+
+        when(userRepository.findAllById(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(u1, u2));
+
+        List<User> result = userService.findAllById(Arrays.asList(1L, 2L));
+
+        assertEquals(2, result.size());
+        verify(userRepository).findAllById(Arrays.asList(1L, 2L));
+        verifyNoMoreInteractions(userRepository);
+    }
 }
@@ -16,7 +16,7 @@ describe('Account page (/me)', () => {
       body: { id: 1, admin: false, token: 'fake' },
     }).as('login');
 
-    cy.intercept('GET', '**/api/session', {
+    cy.intercept('GET', '**/api/session?unpaged=true', {
       statusCode: 200,
       body: [],
     }).as('sessions');
@@ -8,7 +8,7 @@ describe('Create session', () => {
       body: { id: 1, admin: true, token: 'fake' }
     }).as('login');
 
-    cy.intercept('GET', '**/api/session', {
+    cy.intercept('GET', '**/api/session?unpaged=true', {
       statusCode: 200,
       body: []
     }).as('sessions');
@@ -7,7 +7,7 @@ describe('Session detail from list', () => {
       body: { id: 1, admin: true, token: 'fake' },
     }).as('login');
 
-    cy.intercept('GET', '**/api/session', {
+    cy.intercept('GET', '**/api/session?unpaged=true', {
       statusCode: 200,
       body: [
         {
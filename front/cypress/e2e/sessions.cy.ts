@@ -15,7 +15,7 @@ describe('Sessions list', () => {
       }
     }).as('login');
 
-    cy.intercept('GET', '**/api/session', {
+    cy.intercept('GET', '**/api/session?unpaged=true', {
       statusCode: 200,
       body: [
         {
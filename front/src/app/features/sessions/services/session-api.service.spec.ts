@@ -37,12 +37,12 @@ describe('SessionApiService', () => {
     expect(service).toBeTruthy();
   });
 
-  it('all() should GET api/session', () => {
+  it('all() should GET api/session?unpaged=true', () => {
     service.all().subscribe((sessions) => {
       expect(sessions).toEqual([mockSession]);
     });
 
-    const req = httpMock.expectOne(baseUrl);
+    const req = httpMock.expectOne(`${baseUrl}?unpaged=true`);
     expect(req.request.method).toBe('GET');
 
     req.flush([mockSession]);
@@ -14,7 +14,7 @@ export class SessionApiService {
   }
 
   public all(): Observable<Session[]> {
-    return this.httpClient.get<Session[]>(this.pathService);
+    return this.httpClient.get<Session[]>(this.pathService, { params: { unpaged: 'true' } });
   }
 
   public detail(id: string): Observable<Session> {